@@ -0,0 +1,158 @@
+package algo.sort;
+
+import algo.common.Metrics;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Сортировка с выбором движка по форме входа. Один линейный проход считает серии
+ * (как их видит adaptiveSort), min и max; по выборке из SAMPLE элементов оценивается
+ * число различных значений. Затем CostModel оценивает время каждого движка и берётся
+ * самый дешёвый: вставки для крошечных и уже отсортированных массивов, MergeSort
+ * (обычный или по сериям), QuickSort (3-way выигрывает на повторах), RadixSort или
+ * подсчёт для узкого диапазона. Коэффициенты модели калибруются по выводу Sweep.
+ */
+public final class AdaptiveSort {
+    public enum Engine { INSERTION, MERGE, ADAPTIVE_MERGE, QUICK, RADIX, COUNTING }
+
+    // до этого размера профиль дороже самой сортировки
+    static final int SMALL = 32;
+    private static final int SAMPLE = 1024;
+    // счётчики подсчёта не больше 16 МБ
+    static final int MAX_COUNTING_RANGE = 1 << 22;
+
+    private AdaptiveSort() {}
+
+    /**
+     * Форма входа. runs - число неубывающих или строго убывающих серий, distinct - оценка
+     * числа различных значений (точная, если выборка - весь массив).
+     */
+    public record Profile(int n, int runs, boolean sorted, int min, int max, long distinct) {
+        public long range() { return n == 0 ? 0 : (long) max - min + 1; }
+
+        // сколько младших байтов различается у ключей; старшие общие RadixSort пропускает
+        public int digits() {
+            int bits = 32 - Integer.numberOfLeadingZeros(min ^ max);
+            return (bits + 7) >>> 3;
+        }
+    }
+
+    public static Engine sort(int[] a, Metrics m) {
+        return sort(a, CostModel.DEFAULT, m);
+    }
+
+    // возвращает выбранный движок; elapsedNanos - время движка, без профиля
+    public static Engine sort(int[] a, CostModel model, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (model == null) throw new IllegalArgumentException("model is null");
+        if (m == null) m = Metrics.NOOP;
+        Engine e = a.length <= SMALL ? Engine.INSERTION : model.choose(profile(a, m));
+        switch (e) {
+            case INSERTION -> {
+                m.startTimer();
+                QuickSort.insertionSort(a, 0, a.length, m);
+                m.stopTimer();
+            }
+            case MERGE -> MergeSort.sort(a, m);
+            case ADAPTIVE_MERGE -> MergeSort.adaptiveSort(a, m);
+            case QUICK -> QuickSort.sort(a, m);
+            case RADIX -> RadixSort.sort(a, m);
+            case COUNTING -> countingSort(a, m);
+        }
+        return e;
+    }
+
+    public static Engine choose(int[] a, CostModel model) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (model == null) throw new IllegalArgumentException("model is null");
+        return a.length <= SMALL ? Engine.INSERTION : model.choose(profile(a, Metrics.NOOP));
+    }
+
+    public static Profile profile(int[] a) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        return profile(a, Metrics.NOOP);
+    }
+
+    static Profile profile(int[] a, Metrics m) {
+        int n = a.length;
+        if (n == 0) return new Profile(0, 0, true, 0, 0, 0);
+        int min = a[0], max = a[0];
+        int runs = 1;
+        // направление текущей серии: 0 - ещё не ясно, 1 - неубывающая, -1 - строго убывающая
+        int dir = 0;
+        for (int i = 1; i < n; i++) {
+            int x = a[i], prev = a[i - 1];
+            if (x < min) min = x;
+            if (x > max) max = x;
+            if (dir == 0) dir = x < prev ? -1 : 1;
+            else if ((dir > 0) == (x < prev)) {
+                runs++;
+                dir = 0;
+            }
+        }
+        m.onPass();
+        boolean sorted = runs == 1 && dir >= 0;
+        return new Profile(n, runs, sorted, min, max, distinct(a, min, max, m));
+    }
+
+    // GEE: sqrt(n / s) * f1 + (d - f1), где f1 - значения, встреченные в выборке один раз;
+    // если повторов в выборке нет совсем, считаем все значения различными.
+    // Позиции случайные (с фиксированным seed): равномерный шаг совпадает с периодом пилы
+    private static long distinct(int[] a, int min, int max, Metrics m) {
+        int n = a.length;
+        int s = Math.min(n, SAMPLE);
+        int[] sample = new int[s];
+        m.addAlloc(s);
+        if (s == n) System.arraycopy(a, 0, sample, 0, n);
+        else {
+            SplittableRandom rnd = new SplittableRandom(n);
+            for (int j = 0; j < s; j++) sample[j] = a[rnd.nextInt(n)];
+        }
+        Arrays.sort(sample);
+        int d = 0, f1 = 0;
+        for (int i = 0; i < s; ) {
+            int j = i + 1;
+            while (j < s && sample[j] == sample[i]) j++;
+            d++;
+            if (j - i == 1) f1++;
+            i = j;
+        }
+        long range = (long) max - min + 1;
+        if (s == n) return d;
+        if (f1 == s) return Math.min(n, range);
+        double est = Math.sqrt((double) n / s) * f1 + (d - f1);
+        return Math.max(d, Math.min(Math.min(n, range), Math.round(est)));
+    }
+
+    /** Сортировка подсчётом; диапазон значений не больше MAX_COUNTING_RANGE. */
+    public static void countingSort(int[] a, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        int n = a.length;
+        if (n > 1) {
+            int min = a[0], max = a[0];
+            for (int x : a) {
+                if (x < min) min = x;
+                if (x > max) max = x;
+            }
+            long range = (long) max - min + 1;
+            if (range > MAX_COUNTING_RANGE) throw new IllegalArgumentException("value range too wide: " + range);
+            int[] counts = new int[(int) range];
+            m.addAlloc(range);
+            for (int x : a) counts[x - min]++;
+            m.onPass();
+            int i = 0;
+            for (int v = 0; v < counts.length; v++) {
+                int c = counts[v];
+                if (c == 0) continue;
+                Arrays.fill(a, i, i + c, v + min);
+                i += c;
+            }
+            m.onPass();
+            m.addBytesMoved(4L * n);
+        }
+        m.stopTimer();
+    }
+}
@@ -0,0 +1,107 @@
+package algo.sort;
+
+import algo.common.Inputs;
+import algo.common.Metrics;
+import algo.sort.AdaptiveSort.Engine;
+import algo.sort.AdaptiveSort.Profile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveSortTest {
+
+    @Test
+    void sortsEveryDistribution() {
+        for (Inputs.Distribution d : Inputs.Distribution.values()) {
+            for (int n : new int[]{0, 1, 2, 31, 33, 1000, 50_000}) {
+                int[] a = Inputs.ints(d, n, 7);
+                int[] expected = Arrays.copyOf(a, n);
+                Arrays.sort(expected);
+                Engine e = AdaptiveSort.sort(a, new Metrics());
+                assertArrayEquals(expected, a, d + " n=" + n + " engine=" + e);
+            }
+        }
+    }
+
+    @Test
+    void picksEngineByShape() {
+        int n = 200_000;
+        assertEquals(Engine.INSERTION, AdaptiveSort.choose(new Random(1).ints(20).toArray(), CostModel.DEFAULT));
+        assertEquals(Engine.INSERTION, AdaptiveSort.choose(Inputs.ints(Inputs.Distribution.SORTED, n, 1), CostModel.DEFAULT));
+        assertEquals(Engine.ADAPTIVE_MERGE, AdaptiveSort.choose(Inputs.ints(Inputs.Distribution.REVERSED, n, 1), CostModel.DEFAULT));
+        assertEquals(Engine.COUNTING, AdaptiveSort.choose(Inputs.ints(Inputs.Distribution.MANY_DUPLICATES, n, 1), CostModel.DEFAULT));
+        // полный диапазон int: подсчёт неприменим, вставки тем более
+        Engine wide = AdaptiveSort.choose(new Random(2).ints(n).toArray(), CostModel.DEFAULT);
+        assertNotEquals(Engine.COUNTING, wide);
+        assertNotEquals(Engine.INSERTION, wide);
+    }
+
+    @Test
+    void profileSeesRunsAndDuplicates() {
+        Profile sorted = AdaptiveSort.profile(Inputs.ints(Inputs.Distribution.SORTED, 10_000, 1));
+        assertEquals(1, sorted.runs());
+        assertTrue(sorted.sorted());
+
+        Profile reversed = AdaptiveSort.profile(Inputs.ints(Inputs.Distribution.REVERSED, 10_000, 1));
+        assertEquals(1, reversed.runs());
+        assertFalse(reversed.sorted());
+
+        Profile saw = AdaptiveSort.profile(Inputs.ints(Inputs.Distribution.SAWTOOTH, 100_000, 1));
+        assertEquals(16, saw.runs());
+
+        Profile dups = AdaptiveSort.profile(Inputs.ints(Inputs.Distribution.MANY_DUPLICATES, 100_000, 1));
+        assertTrue(dups.distinct() >= 90 && dups.distinct() <= 110, "distinct=" + dups.distinct());
+        assertEquals(100, dups.range());
+        assertEquals(1, dups.digits());
+
+        Profile random = AdaptiveSort.profile(new Random(3).ints(100_000).toArray());
+        assertTrue(random.distinct() > 10_000, "distinct=" + random.distinct());
+        assertEquals(4, random.digits());
+    }
+
+    @Test
+    void countingSortRejectsWideRange() {
+        int[] a = {Integer.MIN_VALUE, 0, Integer.MAX_VALUE};
+        assertThrows(IllegalArgumentException.class, () -> AdaptiveSort.countingSort(a, null));
+        int[] b = {5, -3, 5, 0, -3, 2};
+        Metrics m = new Metrics();
+        AdaptiveSort.countingSort(b, m);
+        assertArrayEquals(new int[]{-3, -3, 0, 2, 5, 5}, b);
+        assertEquals(2, m.passes);
+    }
+
+    @Test
+    void calibratesFromSweepCsv() throws IOException {
+        // seed берётся из строки: с seed 42 оценка различных другая и коэффициент не сойдётся
+        Profile p = AdaptiveSort.profile(Inputs.ints(Inputs.Distribution.RANDOM, 10_000, 7));
+        double basis = CostModel.basis(Engine.QUICK, p);
+        Path csv = Files.createTempFile("sweep", ".csv");
+        Files.writeString(csv, "algo,n,distribution,seed,threads,medianNanos\n"
+                + "quicksort,10000,RANDOM,7,1," + Math.round(3 * basis) + "\n"
+                + "quicksort,10000,RANDOM,7,4," + Math.round(100 * basis) + "\n"
+                + "select,10000,RANDOM,7,1,5\n");
+        Path noSeed = Files.createTempFile("sweep", ".csv");
+        Files.writeString(noSeed, "algo,n,distribution,threads,medianNanos\nquicksort,10000,RANDOM,1,100\n");
+        CostModel model;
+        try {
+            model = CostModel.fromSweep(csv);
+            assertThrows(IllegalArgumentException.class, () -> CostModel.fromSweep(noSeed));
+        } finally {
+            Files.delete(csv);
+            Files.delete(noSeed);
+        }
+        assertEquals(3.0, model.coefficient(Engine.QUICK), 1e-4);
+        assertEquals(CostModel.DEFAULT.coefficient(Engine.MERGE), model.coefficient(Engine.MERGE));
+
+        // дорогой подсчёт в модели - и движок меняется
+        int[] dups = Inputs.ints(Inputs.Distribution.MANY_DUPLICATES, 100_000, 1);
+        assertNotEquals(Engine.COUNTING, AdaptiveSort.choose(dups, CostModel.DEFAULT.with(Engine.COUNTING, 1e6)));
+        assertThrows(IllegalArgumentException.class, () -> CostModel.DEFAULT.with(Engine.MERGE, -1));
+    }
+}
@@ -1,131 +1,327 @@
-package algo.pair;
-
-import algo.common.Metrics;
-
-import java.util.Arrays;
-import java.util.Comparator;
-
-public final class ClosestPair {
-
-    public static final class Result {
-        public final Point2D a, b;
-        public final double dist;
-        public Result(Point2D a, Point2D b, double dist) { this.a = a; this.b = b; this.dist = dist; }
-        @Override public String toString() { return a + " - " + b + " : " + dist; }
-    }
-
-    private static final int CUTOFF = 32;
-
-    private ClosestPair() {}
-
-
-    public static Result closest(Point2D[] pts, Metrics m) {
-        if (pts == null || pts.length < 2) throw new IllegalArgumentException("need >= 2 points");
-        if (m == null) m = new Metrics();
-        m.startTimer();
-
-        Point2D[] px = Arrays.copyOf(pts, pts.length);
-        Arrays.sort(px, Comparator.comparingDouble(Point2D::x));
-        Point2D[] py = Arrays.copyOf(px, px.length);
-        Arrays.sort(py, Comparator.comparingDouble(Point2D::y));
-        m.addAlloc(2L * pts.length);
-
-        Result res = solve(px, py, 0, px.length, m);
-
-        m.stopTimer();
-        return res;
-    }
-
-
-    private static Result solve(Point2D[] px, Point2D[] py, int lo, int hi, Metrics m) {
-        m.onEnter();
-        int n = hi - lo;
-        if (n <= CUTOFF) {
-            Result r = brute(px, lo, hi, m);
-            m.onExit();
-            return r;
-        }
-
-        int mid = lo + n / 2;
-        double midX = px[mid].x();
-
-
-        Point2D[] pyl = new Point2D[n];
-        Point2D[] pyr = new Point2D[n];
-        int li = 0, ri = 0;
-        for (int i = 0; i < py.length; i++) {
-            Point2D p = py[i];
-
-            if (p.x() < px[lo].x() || p.x() > px[hi-1].x()) continue;
-            if (p.x() < midX || (p.x() == midX && indexOf(px, lo, mid, p) >= 0)) {
-                pyl[li++] = p;
-            } else {
-                pyr[ri++] = p;
-            }
-        }
-        m.addAlloc(li + ri);
-
-        Result left  = solve(px, Arrays.copyOf(pyl, li), lo, mid, m);
-        Result right = solve(px, Arrays.copyOf(pyr, ri), mid, hi, m);
-        Result best = left.dist <= right.dist ? left : right;
-
-
-        double delta = best.dist;
-        Point2D[] strip = new Point2D[py.length];
-        int si = 0;
-        for (Point2D p : py) {
-            if (p == null) continue;
-            m.comparisons++;
-            if (Math.abs(p.x() - midX) < delta) strip[si++] = p;
-        }
-        m.addAlloc(si);
-
-        for (int i = 0; i < si; i++) {
-
-            for (int j = i + 1; j < si && (strip[j].y() - strip[i].y()) < delta; j++) {
-                double d = dist(strip[i], strip[j], m);
-                if (d < best.dist) best = new Result(strip[i], strip[j], d);
-            }
-        }
-
-        m.onExit();
-        return best;
-    }
-
-
-    private static int indexOf(Point2D[] px, int lo, int hi, Point2D p) {
-        for (int i = lo; i < hi; i++) if (px[i] == p) return i;
-        return -1;
-    }
-
-
-    private static Result brute(Point2D[] px, int lo, int hi, Metrics m) {
-        Result best = new Result(px[lo], px[lo+1], dist(px[lo], px[lo+1], m));
-        for (int i = lo; i < hi; i++) {
-            for (int j = i + 1; j < hi; j++) {
-                double d = dist(px[i], px[j], m);
-                if (d < best.dist) best = new Result(px[i], px[j], d);
-            }
-        }
-        return best;
-    }
-
-    private static double dist(Point2D a, Point2D b, Metrics m) {
-        m.comparisons++;
-        double dx = a.x() - b.x(), dy = a.y() - b.y();
-        return Math.hypot(dx, dy);
-    }
-
-
-    public static void main(String[] args) {
-        Point2D[] pts = {
-                new Point2D(0,0), new Point2D(5,5), new Point2D(1,1),
-                new Point2D(9,9), new Point2D(2,2), new Point2D(8,3)
-        };
-        Metrics m = new Metrics();
-        Result r = closest(pts, m);
-        System.out.println(r);
-        System.out.println(m);
-    }
-}
-
+package algo.pair;
+
+import algo.common.Metrics;
+import algo.common.Phase;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public final class ClosestPair {
+
+    public static final class Result {
+        public final Point2D a, b;
+        public final double dist;
+        public Result(Point2D a, Point2D b, double dist) { this.a = a; this.b = b; this.dist = dist; }
+        @Override public String toString() { return a + " - " + b + " : " + dist; }
+    }
+
+    /** Пара по индексам во входных массивах, i < j. */
+    public record IndexResult(int i, int j, double dist) {}
+
+    private static final int CUTOFF = 32;
+    private static final int PARALLEL_CUTOFF = 1 << 13;
+
+    private ClosestPair() {}
+
+
+    public static Result closest(Point2D[] pts, Metrics m) {
+        if (pts == null || pts.length < 2) throw new IllegalArgumentException("need >= 2 points");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        IndexResult r = solve(new Engine(pts, m), m);
+        m.stopTimer();
+        return new Result(pts[r.i()], pts[r.j()], r.dist());
+    }
+
+    /**
+     * Ближайшая пара на массивах координат (struct-of-arrays). Все буферы выделяются
+     * один раз; деление идёт по позиции в отсортированном по x массиве, поэтому равные x
+     * ничего не стоят; по y половины сливаются на обратном пути рекурсии, как в merge sort;
+     * сравниваются квадраты расстояний, корень берётся один раз в конце.
+     */
+    public static IndexResult closest(double[] xs, double[] ys, Metrics m) {
+        check(xs, ys);
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        IndexResult r = solve(new Engine(xs, ys, m), m);
+        m.stopTimer();
+        return r;
+    }
+
+    private static IndexResult solve(Engine e, Metrics m) {
+        int n = e.x.length;
+        long t = m.phaseBegin(Phase.CLOSEST_SORT);
+        e.sortByX(0, n, m);
+        m.phaseEnd(Phase.CLOSEST_SORT, t, n);
+        Best b = new Best();
+        e.solve(0, n, b, m);
+        return b.result();
+    }
+
+    public static IndexResult parallelClosest(double[] xs, double[] ys, Metrics m) {
+        return parallelClosest(xs, ys, m, ForkJoinPool.commonPool());
+    }
+
+    // Половины независимы до сканирования полосы, поэтому решаются параллельными задачами,
+    // как и сортировка по x; у каждой задачи свой Best и свои счётчики.
+    public static IndexResult parallelClosest(double[] xs, double[] ys, Metrics m, ForkJoinPool pool) {
+        check(xs, ys);
+        if (pool == null) throw new IllegalArgumentException("pool is null");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        Engine e = new Engine(xs, ys, m);
+        long t = m.phaseBegin(Phase.CLOSEST_SORT);
+        SortTask sort = new SortTask(e, 0, xs.length, m.fork());
+        pool.invoke(sort);
+        m.merge(sort.m);
+        m.phaseEnd(Phase.CLOSEST_SORT, t, xs.length);
+        SolveTask solve = new SolveTask(e, 0, xs.length, m.fork());
+        pool.invoke(solve);
+        m.merge(solve.m);
+        m.stopTimer();
+        return solve.best.result();
+    }
+
+    private static void check(double[] xs, double[] ys) {
+        if (xs == null || ys == null) throw new IllegalArgumentException("coordinates are null");
+        if (xs.length != ys.length) throw new IllegalArgumentException("xs and ys differ in length");
+        if (xs.length < 2) throw new IllegalArgumentException("need >= 2 points");
+    }
+
+    // лучшая пара на отрезке: квадрат расстояния и исходные индексы
+    static final class Best {
+        double d2 = Double.POSITIVE_INFINITY;
+        int i = -1, j = -1;
+
+        void take(Best o) {
+            if (o.d2 < d2) {
+                d2 = o.d2;
+                i = o.i;
+                j = o.j;
+            }
+        }
+
+        IndexResult result() {
+            return new IndexResult(Math.min(i, j), Math.max(i, j), Math.sqrt(d2));
+        }
+    }
+
+    // Точки (x[i], y[i], id[i]) переставляются вместе; tx/ty/tid - буфер слияния,
+    // а после слияния - полоса у разделяющей прямой, с теми же индексами, что и отрезок,
+    // так что задачи на непересекающихся отрезках не мешают друг другу.
+    static final class Engine {
+        final double[] x, y, tx, ty;
+        final int[] id, tid;
+
+        Engine(double[] xs, double[] ys, Metrics m) {
+            int n = xs.length;
+            x = Arrays.copyOf(xs, n);
+            y = Arrays.copyOf(ys, n);
+            id = new int[n];
+            for (int i = 0; i < n; i++) id[i] = i;
+            tx = new double[n];
+            ty = new double[n];
+            tid = new int[n];
+            m.addAlloc(6L * n);
+        }
+
+        // координаты пишутся сразу в рабочие массивы, без промежуточных xs/ys
+        Engine(Point2D[] pts, Metrics m) {
+            this(new double[pts.length], new double[pts.length], new int[pts.length],
+                    new double[pts.length], new double[pts.length], new int[pts.length]);
+            for (int i = 0; i < pts.length; i++) {
+                x[i] = pts[i].x();
+                y[i] = pts[i].y();
+                id[i] = i;
+            }
+            m.addAlloc(6L * pts.length);
+        }
+
+        // на готовых массивах, без копий: для внешнего режима, который переиспользует буферы;
+        // если поменять местами x и y (и tx с ty), sortByX сортирует по y
+        Engine(double[] x, double[] y, int[] id, double[] tx, double[] ty, int[] tid) {
+            this.x = x; this.y = y; this.id = id;
+            this.tx = tx; this.ty = ty; this.tid = tid;
+        }
+
+        void sortByX(int lo, int hi, Metrics m) {
+            if (hi - lo <= CUTOFF) {
+                insertionSort(x, y, lo, hi, m);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            sortByX(lo, mid, m);
+            sortByX(mid, hi, m);
+            merge(x, y, lo, mid, hi, m);
+        }
+
+        // после возврата [lo, hi) отсортирован по y
+        void solve(int lo, int hi, Best b, Metrics m) {
+            m.onEnter(hi - lo);
+            if (hi - lo <= CUTOFF) {
+                long t = m.phaseBegin(Phase.CLOSEST_BASE);
+                for (int i = lo; i < hi; i++) {
+                    for (int j = i + 1; j < hi; j++) check(x, y, id, i, j, b, m);
+                }
+                insertionSort(y, x, lo, hi, m);
+                m.phaseEnd(Phase.CLOSEST_BASE, t, hi - lo);
+                m.onExit();
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            double midX = x[mid];
+            solve(lo, mid, b, m);
+            solve(mid, hi, b, m);
+            combine(lo, mid, hi, midX, b, m);
+            m.onExit();
+        }
+
+        // половины уже отсортированы по y: слияние и проверка полосы шириной 2*delta
+        void combine(int lo, int mid, int hi, double midX, Best b, Metrics m) {
+            long t = m.phaseBegin(Phase.CLOSEST_STRIP);
+            merge(y, x, lo, mid, hi, m);
+            int s = lo;
+            for (int i = lo; i < hi; i++) {
+                m.onCompare();
+                double dx = x[i] - midX;
+                if (dx * dx < b.d2) {
+                    tx[s] = x[i];
+                    ty[s] = y[i];
+                    tid[s++] = id[i];
+                }
+            }
+            for (int i = lo; i < s; i++) {
+                for (int j = i + 1; j < s; j++) {
+                    double dy = ty[j] - ty[i];
+                    if (dy * dy >= b.d2) break;
+                    check(tx, ty, tid, i, j, b, m);
+                }
+            }
+            m.phaseEnd(Phase.CLOSEST_STRIP, t, hi - lo);
+        }
+
+        static void check(double[] px, double[] py, int[] pid, int i, int j, Best b, Metrics m) {
+            m.onCompare();
+            double dx = px[i] - px[j], dy = py[i] - py[j];
+            double d = dx * dx + dy * dy;
+            if (d < b.d2) {
+                b.d2 = d;
+                b.i = pid[i];
+                b.j = pid[j];
+            }
+        }
+
+        // key - массив, по которому сортируем, other - вторая координата
+        private void insertionSort(double[] key, double[] other, int lo, int hi, Metrics m) {
+            for (int i = lo + 1; i < hi; i++) {
+                double k = key[i], o = other[i];
+                int p = id[i];
+                int j = i - 1;
+                while (j >= lo) {
+                    m.onCompare();
+                    if (key[j] <= k) break;
+                    key[j + 1] = key[j];
+                    other[j + 1] = other[j];
+                    id[j + 1] = id[j];
+                    m.onSwap();
+                    j--;
+                }
+                key[j + 1] = k;
+                other[j + 1] = o;
+                id[j + 1] = p;
+            }
+        }
+
+        private void merge(double[] key, double[] other, int lo, int mid, int hi, Metrics m) {
+            double[] tk = key == x ? tx : ty, to = key == x ? ty : tx;
+            int i = lo, j = mid, k = lo;
+            while (i < mid && j < hi) {
+                m.onCompare();
+                int src = key[j] < key[i] ? j++ : i++;
+                tk[k] = key[src];
+                to[k] = other[src];
+                tid[k++] = id[src];
+            }
+            int rest = i < mid ? i : j, len = hi - k;
+            System.arraycopy(key, rest, tk, k, len);
+            System.arraycopy(other, rest, to, k, len);
+            System.arraycopy(id, rest, tid, k, len);
+            System.arraycopy(tk, lo, key, lo, hi - lo);
+            System.arraycopy(to, lo, other, lo, hi - lo);
+            System.arraycopy(tid, lo, id, lo, hi - lo);
+            m.addSwaps(hi - lo);
+        }
+    }
+
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Engine e;
+        final int lo, hi;
+        final Metrics m;
+
+        SortTask(Engine e, int lo, int hi, Metrics m) {
+            this.e = e; this.lo = lo; this.hi = hi; this.m = m;
+        }
+
+        @Override protected void compute() {
+            if (hi - lo <= PARALLEL_CUTOFF) {
+                e.sortByX(lo, hi, m);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            SortTask left = new SortTask(e, lo, mid, m.fork());
+            SortTask right = new SortTask(e, mid, hi, m.fork());
+            invokeAll(left, right);
+            m.merge(left.m);
+            m.merge(right.m);
+            e.merge(e.x, e.y, lo, mid, hi, m);
+        }
+    }
+
+    private static final class SolveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Engine e;
+        final int lo, hi;
+        final Metrics m;
+        final Best best = new Best();
+
+        SolveTask(Engine e, int lo, int hi, Metrics m) {
+            this.e = e; this.lo = lo; this.hi = hi; this.m = m;
+        }
+
+        @Override protected void compute() {
+            if (hi - lo <= PARALLEL_CUTOFF) {
+                e.solve(lo, hi, best, m);
+                return;
+            }
+            m.onEnter(hi - lo);
+            int mid = (lo + hi) >>> 1;
+            double midX = e.x[mid];
+            SolveTask left = new SolveTask(e, lo, mid, m.fork());
+            SolveTask right = new SolveTask(e, mid, hi, m.fork());
+            invokeAll(left, right);
+            m.merge(left.m);
+            m.merge(right.m);
+            best.take(left.best);
+            best.take(right.best);
+            e.combine(lo, mid, hi, midX, best, m);
+            m.onExit();
+        }
+    }
+
+
+    public static void main(String[] args) {
+        Point2D[] pts = {
+                new Point2D(0,0), new Point2D(5,5), new Point2D(1,1),
+                new Point2D(9,9), new Point2D(2,2), new Point2D(8,3)
+        };
+        Metrics m = new Metrics();
+        Result r = closest(pts, m);
+        System.out.println(r);
+        System.out.println(m);
+    }
+}
+
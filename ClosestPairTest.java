@@ -1,46 +1,125 @@
-package algo.pair;
-
-import algo.common.Metrics;
-import org.junit.jupiter.api.Test;
-
-import java.util.Random;
-
-import static org.junit.jupiter.api.Assertions.*;
-
-public class ClosestPairTest {
-
-    @Test
-    void tiny() {
-        Point2D[] pts = {
-                new Point2D(0,0),
-                new Point2D(3,4),
-                new Point2D(1,1)
-        };
-        Metrics m = new Metrics();
-        ClosestPair.Result r = ClosestPair.closest(pts, m);
-        assertEquals(Math.hypot(1,1), r.dist, 1e-9);
-    }
-
-    @Test
-    void randomVsBruteSmall() {
-        Random rnd = new Random(123);
-        for (int n = 2; n <= 200; n += 7) {
-            Point2D[] pts = new Point2D[n];
-            for (int i = 0; i < n; i++) {
-                pts[i] = new Point2D(rnd.nextDouble()*1000.0, rnd.nextDouble()*1000.0);
-            }
-            Metrics fastM = new Metrics();
-            ClosestPair.Result fast = ClosestPair.closest(pts, fastM);
-
-
-            double brute = Double.POSITIVE_INFINITY;
-            for (int i = 0; i < n; i++) {
-                for (int j = i+1; j < n; j++) {
-                    double d = Math.hypot(pts[i].x()-pts[j].x(), pts[i].y()-pts[j].y());
-                    if (d < brute) brute = d;
-                }
-            }
-            assertEquals(brute, fast.dist, 1e-9, "n=" + n);
-        }
-    }
-}
+package algo.pair;
+
+import algo.common.Inputs;
+import algo.common.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClosestPairTest {
+
+    @Test
+    void tiny() {
+        Point2D[] pts = {
+                new Point2D(0,0),
+                new Point2D(3,4),
+                new Point2D(1,1)
+        };
+        Metrics m = new Metrics();
+        ClosestPair.Result r = ClosestPair.closest(pts, m);
+        assertEquals(Math.hypot(1,1), r.dist, 1e-9);
+    }
+
+    @Test
+    void randomVsBruteSmall() {
+        Random rnd = new Random(123);
+        for (int n = 2; n <= 200; n += 7) {
+            Point2D[] pts = new Point2D[n];
+            for (int i = 0; i < n; i++) {
+                pts[i] = new Point2D(rnd.nextDouble()*1000.0, rnd.nextDouble()*1000.0);
+            }
+            Metrics fastM = new Metrics();
+            ClosestPair.Result fast = ClosestPair.closest(pts, fastM);
+
+
+            double brute = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                for (int j = i+1; j < n; j++) {
+                    double d = Math.hypot(pts[i].x()-pts[j].x(), pts[i].y()-pts[j].y());
+                    if (d < brute) brute = d;
+                }
+            }
+            assertEquals(brute, fast.dist, 1e-9, "n=" + n);
+            // координаты один раз, сразу в рабочие массивы: x, y, id и три буфера
+            assertEquals(6L * n, fastM.allocations, "n=" + n);
+        }
+    }
+
+    private static double brute(double[] xs, double[] ys) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < xs.length; i++) {
+            for (int j = i + 1; j < xs.length; j++) best = Math.min(best, Math.hypot(xs[i] - xs[j], ys[i] - ys[j]));
+        }
+        return best;
+    }
+
+    @Test
+    void indexResultMatchesBrute() {
+        Random rnd = new Random(7);
+        for (int n = 2; n <= 600; n += 37) {
+            double[] xs = new double[n], ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                // мало различных x, чтобы было много равных
+                xs[i] = rnd.nextInt(20);
+                ys[i] = rnd.nextDouble() * 1000.0;
+            }
+            ClosestPair.IndexResult r = ClosestPair.closest(xs, ys, new Metrics());
+            assertEquals(brute(xs, ys), r.dist(), 1e-9, "n=" + n);
+            assertTrue(r.i() < r.j());
+            assertEquals(r.dist(), Math.hypot(xs[r.i()] - xs[r.j()], ys[r.i()] - ys[r.j()]), 1e-9);
+        }
+    }
+
+    @Test
+    void allOnOneVerticalLine() {
+        int n = 200_000;
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = 5.0;
+            ys[i] = 3.0 * ((i * 7919L) % n);
+        }
+        ys[123] = 3.0 * ((124 * 7919L) % n) + 0.5;
+        Metrics m = new Metrics();
+        ClosestPair.IndexResult r = ClosestPair.closest(xs, ys, m);
+        assertEquals(0.5, r.dist(), 1e-9);
+        assertTrue(m.allocations <= 6L * n, "allocations=" + m.allocations);
+    }
+
+    @Test
+    void duplicatePoints() {
+        Point2D[] pts = {new Point2D(1, 1), new Point2D(4, 4), new Point2D(1, 1)};
+        ClosestPair.Result r = ClosestPair.closest(pts, null);
+        assertEquals(0.0, r.dist);
+        assertEquals(pts[0], r.a);
+    }
+
+    @Test
+    void parallelMatchesSequential() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Random rnd = new Random(31);
+            for (Inputs.PointDistribution d : Inputs.PointDistribution.values()) {
+                for (int n : new int[]{2, 100, 300_000}) {
+                    Point2D[] pts = Inputs.points(d, n, rnd.nextLong());
+                    double[] xs = new double[n], ys = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        // половина точек на нескольких вертикалях
+                        xs[i] = i % 2 == 0 ? Math.floor(pts[i].x() / 100) : pts[i].x();
+                        ys[i] = pts[i].y();
+                    }
+                    ClosestPair.IndexResult seq = ClosestPair.closest(xs, ys, null);
+                    Metrics m = new Metrics();
+                    ClosestPair.IndexResult par = ClosestPair.parallelClosest(xs, ys, m, pool);
+                    assertEquals(seq.dist(), par.dist(), 0.0, d + " n=" + n);
+                    assertEquals(par.dist(), Math.hypot(xs[par.i()] - xs[par.j()], ys[par.i()] - ys[par.j()]), 1e-9);
+                    assertTrue(m.comparisons > 0);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,110 @@
+package algo.common;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Metrics, которые можно делить между потоками. Каждый поток пишет только в свою ячейку
+// (обычные поля, без CAS), итог собирается при чтении: fold() складывает ячейки в унаследованные
+// поля (comparisons, swaps, ...), snapshot() делает то же и возвращает копию. До fold()/snapshot()
+// унаследованные поля устаревшие. Точные значения - после того, как пишущие потоки присоединены.
+// Параллельные алгоритмы берут через fork() обычный Metrics на задачу и сливают его обратно.
+public final class ConcurrentMetrics extends Metrics {
+
+    // Ячейка отделена от соседних объектов 128 байтами с каждой стороны (две кэш-линии:
+    // процессор подтягивает их парой). Отступы - в разных классах иерархии: поля одного
+    // класса HotSpot может переставить, а поля суперкласса всегда лежат раньше полей подкласса.
+    private static class PadBefore {
+        long p00, p01, p02, p03, p04, p05, p06, p07, p08, p09, p10, p11, p12, p13, p14, p15;
+    }
+
+    private static class CellFields extends PadBefore {
+        long comparisons, swaps, allocations, passes, bytesMoved, ioBytes, elapsedNanos, startNanos;
+        // long, а не int: int HotSpot кладёт в щель заголовка объекта, перед отступом
+        long depth, maxDepth;
+    }
+
+    private static final class Cell extends CellFields {
+        long q00, q01, q02, q03, q04, q05, q06, q07, q08, q09, q10, q11, q12, q13, q14, q15;
+    }
+
+    private final ConcurrentLinkedQueue<Cell> cells = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Cell> local = ThreadLocal.withInitial(() -> {
+        Cell c = new Cell();
+        cells.add(c);
+        return c;
+    });
+
+    private Cell cell() { return local.get(); }
+
+    @Override public void startTimer() { cell().startNanos = System.nanoTime(); }
+    @Override public void stopTimer() {
+        Cell c = cell();
+        c.elapsedNanos += System.nanoTime() - c.startNanos;
+    }
+
+    @Override public void onCompare() { cell().comparisons++; }
+    @Override public void onSwap()    { cell().swaps++; }
+    @Override public void addSwaps(long n) { cell().swaps += n; }
+
+    @Override public void onEnter() {
+        Cell c = cell();
+        c.depth++;
+        if (c.depth > c.maxDepth) c.maxDepth = c.depth;
+    }
+    @Override public void onExit() { cell().depth--; }
+
+    // глубина текущего потока: по ней phaseEnd и гистограммы видят уровень рекурсии
+    @Override protected int depth() { return (int) cell().depth; }
+
+    @Override public void addAlloc(long units) { cell().allocations += units; }
+    @Override public void onPass() { cell().passes++; }
+    @Override public void addBytesMoved(long bytes) { cell().bytesMoved += bytes; }
+    @Override public void addIo(long bytes) { cell().ioBytes += bytes; }
+
+    @Override public void merge(Metrics other) {
+        Metrics o = other.snapshot();
+        Cell c = cell();
+        c.comparisons += o.comparisons;
+        c.swaps += o.swaps;
+        c.allocations += o.allocations;
+        c.passes += o.passes;
+        c.bytesMoved += o.bytesMoved;
+        c.ioBytes += o.ioBytes;
+        c.elapsedNanos += o.elapsedNanos;
+        long depth = c.depth + o.maxRecursionDepth;
+        if (depth > c.maxDepth) c.maxDepth = depth;
+    }
+
+    @Override public Metrics fork() { return new Metrics(); }
+
+    // Итоги по всем ячейкам в унаследованные поля; elapsedNanos - сумма всех интервалов
+    // start/stop во всех потоках. Возвращает this, чтобы читать сразу: m.fold().comparisons
+    public ConcurrentMetrics fold() {
+        long cmp = 0, sw = 0, alloc = 0, ps = 0, moved = 0, io = 0, nanos = 0, depth = 0;
+        for (Cell c : cells) {
+            cmp += c.comparisons;
+            sw += c.swaps;
+            alloc += c.allocations;
+            ps += c.passes;
+            moved += c.bytesMoved;
+            io += c.ioBytes;
+            nanos += c.elapsedNanos;
+            depth = Math.max(depth, c.maxDepth);
+        }
+        comparisons = cmp;
+        swaps = sw;
+        allocations = alloc;
+        passes = ps;
+        bytesMoved = moved;
+        ioBytes = io;
+        elapsedNanos = nanos;
+        maxRecursionDepth = (int) depth;
+        return this;
+    }
+
+    @Override public Metrics snapshot() {
+        fold();
+        return super.snapshot();
+    }
+
+    @Override public String toString() { return snapshot().toString(); }
+}
\ No newline at end of file
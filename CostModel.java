@@ -0,0 +1,153 @@
+package algo.sort;
+
+import algo.common.Inputs;
+import algo.sort.AdaptiveSort.Engine;
+import algo.sort.AdaptiveSort.Profile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Модель стоимости для AdaptiveSort: время движка = коэффициент * basis(движок, профиль).
+ * basis - асимптотика в «единицах работы» с учётом формы входа (серии, повторы, ширина
+ * ключей), коэффициент - наносекунды на единицу на конкретной машине. Коэффициенты
+ * берутся медианой отношений время / basis по строкам CSV, который пишет algo.main.Sweep.
+ */
+public final class CostModel {
+    private static final Engine[] ENGINES = Engine.values();
+    // строки Sweep, которые соответствуют движкам
+    private static final Map<String, Engine> SWEEP_NAMES = Map.of(
+            "mergesort", Engine.MERGE,
+            "mergesort-adaptive", Engine.ADAPTIVE_MERGE,
+            "quicksort", Engine.QUICK,
+            "radix", Engine.RADIX,
+            "counting", Engine.COUNTING
+    );
+    // листья adaptiveSort добиваются вставками до ~32 элементов
+    private static final int MIN_RUN = 32;
+    private static final int INSERTION_MAX = 64;
+
+    // fromSweep по всем Inputs.Distribution, n = 10^4..10^6, JDK 17, один виртуальный x86-64 CPU;
+    // вставки - отдельным замером на 32 элементах. Тот Sweep ещё включал в время копию входа:
+    // вычтена медиана 0.3 нс на элемент / (basis / n), заметно это только у RADIX и COUNTING
+    public static final CostModel DEFAULT = new CostModel(new double[]{
+            0.6,   // INSERTION
+            5.0,   // MERGE
+            5.8,   // ADAPTIVE_MERGE
+            6.9,   // QUICK
+            7.0,   // RADIX
+            4.1    // COUNTING
+    });
+
+    private final double[] nsPerUnit;
+
+    private CostModel(double[] nsPerUnit) {
+        this.nsPerUnit = nsPerUnit;
+    }
+
+    public double coefficient(Engine e) { return nsPerUnit[e.ordinal()]; }
+
+    public CostModel with(Engine e, double ns) {
+        if (!(ns > 0) || Double.isInfinite(ns)) throw new IllegalArgumentException("coefficient must be positive: " + ns);
+        double[] c = nsPerUnit.clone();
+        c[e.ordinal()] = ns;
+        return new CostModel(c);
+    }
+
+    // оценка в наносекундах; бесконечность - движок к этому входу неприменим
+    public double estimate(Engine e, Profile p) {
+        return nsPerUnit[e.ordinal()] * basis(e, p);
+    }
+
+    public Engine choose(Profile p) {
+        Engine best = Engine.MERGE;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (Engine e : ENGINES) {
+            double c = estimate(e, p);
+            if (c < bestCost) {
+                bestCost = c;
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    public static double basis(Engine e, Profile p) {
+        double n = Math.max(p.n(), 1);
+        return switch (e) {
+            case INSERTION -> p.sorted() ? n
+                    : p.n() <= INSERTION_MAX ? n + n * n / 4 : Double.POSITIVE_INFINITY;
+            case MERGE -> n * log2(n);
+            // короткие серии adaptiveSort сначала добивает вставками до MIN_RUN
+            case ADAPTIVE_MERGE -> n / p.runs() >= MIN_RUN ? n * (1 + log2(p.runs()))
+                    : n * (1 + log2(Math.ceil(n / MIN_RUN)) + MIN_RUN / 4.0);
+            case QUICK -> n * log2(Math.min(n, p.distinct()) + 1);
+            case RADIX -> n * (1 + p.digits());
+            case COUNTING -> p.range() <= AdaptiveSort.MAX_COUNTING_RANGE ? n + p.range() / 2.0 : Double.POSITIVE_INFINITY;
+        };
+    }
+
+    private static double log2(double x) {
+        return x <= 1 ? 0 : Math.log(x) / Math.log(2);
+    }
+
+    /**
+     * Калибровка по CSV Sweep (колонки algo, n, distribution, seed, threads, medianNanos).
+     * Вход каждой строки восстанавливается через Inputs с seed из той же строки; время
+     * Sweep не включает копирование входа, так что в коэффициент попадает только движок.
+     * Движки без строк в файле берут коэффициент из DEFAULT.
+     */
+    public static CostModel fromSweep(Path csv) throws IOException {
+        if (csv == null) throw new IllegalArgumentException("csv is null");
+        Map<Engine, List<Double>> ratios = new EnumMap<>(Engine.class);
+        try (BufferedReader r = Files.newBufferedReader(csv)) {
+            String header = r.readLine();
+            if (header == null) throw new IllegalArgumentException("empty csv: " + csv);
+            List<String> cols = Arrays.asList(header.trim().split(","));
+            int algo = column(cols, "algo"), n = column(cols, "n"), dist = column(cols, "distribution");
+            int seed = column(cols, "seed"), threads = cols.indexOf("threads"), nanos = column(cols, "medianNanos");
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isBlank()) continue;
+                String[] f = line.trim().split(",");
+                Engine e = SWEEP_NAMES.get(f[algo]);
+                if (e == null || (threads >= 0 && !f[threads].equals("1"))) continue;
+                int size = Integer.parseInt(f[n]);
+                Profile p = AdaptiveSort.profile(Inputs.ints(Inputs.distribution(f[dist]), size, Long.parseLong(f[seed])));
+                double b = basis(e, p);
+                if (b <= 0 || Double.isInfinite(b)) continue;
+                ratios.computeIfAbsent(e, k -> new ArrayList<>()).add(Double.parseDouble(f[nanos]) / b);
+            }
+        }
+        double[] c = DEFAULT.nsPerUnit.clone();
+        for (Map.Entry<Engine, List<Double>> en : ratios.entrySet()) {
+            List<Double> v = en.getValue();
+            v.sort(null);
+            c[en.getKey().ordinal()] = v.get(v.size() / 2);
+        }
+        return new CostModel(c);
+    }
+
+    private static int column(List<String> cols, String name) {
+        int i = cols.indexOf(name);
+        if (i < 0) throw new IllegalArgumentException("csv has no column " + name);
+        return i;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CostModel{");
+        for (Engine e : ENGINES) {
+            if (e.ordinal() > 0) sb.append(", ");
+            sb.append(e).append('=').append(String.format("%.3f", nsPerUnit[e.ordinal()]));
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -1,121 +1,463 @@
-package algo.select;
-
-import algo.common.Metrics;
-
-public final class DeterministicSelect {
-    private static final int GROUP = 5;
-    private static final int CUTOFF = 32;
-
-    private DeterministicSelect() {}
-
-
-    public static int selectInPlace(int[] a, int k, Metrics m) {
-        if (a == null || a.length == 0) throw new IllegalArgumentException("empty array");
-        if (k < 0 || k >= a.length) throw new IllegalArgumentException("k out of range");
-        if (m == null) m = new Metrics();
-        m.startTimer();
-        int ans = selectRec(a, 0, a.length, k, m);
-        m.stopTimer();
-        return ans;
-    }
-
-
-    public static int select(int[] a, int k, Metrics m) {
-        int[] copy = java.util.Arrays.copyOf(a, a.length);
-        if (m != null) m.addAlloc(copy.length);
-        return selectInPlace(copy, k, m);
-    }
-
-    private static int selectRec(int[] a, int lo, int hi, int k, Metrics m) {
-        m.onEnter();
-        int n = hi - lo;
-        if (n <= CUTOFF) {
-            insertionSort(a, lo, hi, m);
-            int res = a[lo + k];
-            m.onExit();
-            return res;
-        }
-
-
-        int groups = (n + GROUP - 1) / GROUP;
-        for (int g = 0; g < groups; g++) {
-            int gs = lo + g * GROUP;
-            int ge = Math.min(gs + GROUP, hi);
-            insertionSort(a, gs, ge, m);
-            int medianIdx = gs + ((ge - gs) >> 1);
-            swap(a, lo + g, medianIdx, m);
-        }
-
-
-        int medianOfMedians = selectRec(a, lo, lo + groups, groups / 2, m);
-
-
-        int[] bounds = partition3(a, lo, hi, medianOfMedians, m);
-        int ltEnd = bounds[0];
-        int gtBeg = bounds[1];
-
-        int leftSize = ltEnd - lo + 1;
-        int midSize  = gtBeg - (ltEnd + 1);
-
-        int res;
-        if (k < leftSize) {
-            res = selectRec(a, lo, ltEnd + 1, k, m);
-        } else if (k < leftSize + midSize) {
-
-            res = medianOfMedians;
-        } else {
-            res = selectRec(a, gtBeg, hi, k - leftSize - midSize, m);
-        }
-        m.onExit();
-        return res;
-    }
-
-    private static int[] partition3(int[] a, int lo, int hi, int pivot, Metrics m) {
-        int lt = lo, i = lo, gt = hi - 1;
-        while (i <= gt) {
-            m.comparisons++;
-            if (a[i] < pivot) {
-                swap(a, lt++, i++, m);
-            } else {
-                m.comparisons++;
-                if (a[i] > pivot) {
-                    swap(a, i, gt--, m);
-                } else {
-                    i++;
-                }
-            }
-        }
-        return new int[]{lt - 1, gt + 1};
-    }
-
-    private static void insertionSort(int[] a, int lo, int hi, Metrics m) {
-        for (int i = lo + 1; i < hi; i++) {
-            int x = a[i];
-            int j = i - 1;
-            while (j >= lo) {
-                m.comparisons++;
-                if (a[j] <= x) break;
-                a[j + 1] = a[j];
-                m.swaps++;
-                j--;
-            }
-            a[j + 1] = x;
-        }
-    }
-
-    private static void swap(int[] a, int i, int j, Metrics m) {
-        if (i == j) return;
-        int t = a[i]; a[i] = a[j]; a[j] = t;
-        if (m != null) m.swaps++;
-    }
-
-
-    public static void main(String[] args) {
-        int[] a = {7,1,9,3,3,5,8,2,6,4};
-        Metrics m = new Metrics();
-        int k = 4;
-        int v = select(a, k, m);
-        System.out.println("k=" + k + " -> " + v);
-        System.out.println(m);
-    }
-}
+package algo.select;
+
+import algo.common.ForBlocks;
+import algo.common.Metrics;
+import algo.common.Phase;
+import algo.sort.Kernels;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class DeterministicSelect {
+    private static final int GROUP = 5;
+    private static final int CUTOFF = 32;
+    // Floyd-Rivest выборка включается только на больших отрезках
+    private static final int SAMPLE_THRESHOLD = 600;
+    // Столько шагов подряд без сжатия отрезка до 3/4 - и переходим на медиану медиан
+    private static final int STALL_LIMIT = 3;
+    private static final int PARALLEL_THRESHOLD = 1 << 17;
+    private static final int PARALLEL_BLOCK = 1 << 16;
+    private static final int MAX_SAMPLE = 1 << 16;
+
+    private DeterministicSelect() {}
+
+
+    public static int selectInPlace(int[] a, int k, Metrics m) {
+        if (a == null || a.length == 0) throw new IllegalArgumentException("empty array");
+        if (k < 0 || k >= a.length) throw new IllegalArgumentException("k out of range");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        int ans = selectRec(a, 0, a.length, k, m);
+        m.stopTimer();
+        return ans;
+    }
+
+
+    public static int select(int[] a, int k, Metrics m) {
+        int[] copy = java.util.Arrays.copyOf(a, a.length);
+        if (m != null) m.addAlloc(copy.length);
+        return selectInPlace(copy, k, m);
+    }
+
+    /**
+     * Introselect: опорные берутся из выборки (Floyd-Rivest), медиана медиан
+     * запускается только если отрезок несколько шагов подряд почти не сжимается.
+     * В среднем O(n) с малой константой, в худшем случае тоже O(n).
+     */
+    public static int introselectInPlace(int[] a, int k, Metrics m) {
+        if (a == null || a.length == 0) throw new IllegalArgumentException("empty array");
+        if (k < 0 || k >= a.length) throw new IllegalArgumentException("k out of range");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        int ans = introselectRange(a, 0, a.length, k, m);
+        m.stopTimer();
+        return ans;
+    }
+
+    public static int introselect(int[] a, int k, Metrics m) {
+        int[] copy = java.util.Arrays.copyOf(a, a.length);
+        if (m != null) m.addAlloc(copy.length);
+        return introselectInPlace(copy, k, m);
+    }
+
+    /**
+     * Несколько порядковых статистик за один проход: ранги сортируются, массив делится
+     * по среднему запрошенному рангу, и рекурсия идёт только в части, где остались ранги.
+     * Для k рангов это O(n log k) вместо k отдельных select с копией массива.
+     * Результат в порядке ks; повторы в ks допустимы.
+     */
+    public static int[] multiSelectInPlace(int[] a, int[] ks, Metrics m) {
+        if (a == null || a.length == 0) throw new IllegalArgumentException("empty array");
+        if (ks == null) throw new IllegalArgumentException("ks is null");
+        for (int k : ks) {
+            if (k < 0 || k >= a.length) throw new IllegalArgumentException("k out of range: " + k);
+        }
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        int[] res = multiSelectRange(a, ks, m);
+        m.stopTimer();
+        return res;
+    }
+
+    // без проверок и таймера: для вызова изнутри другого алгоритма, который засекает время сам
+    static int[] multiSelectRange(int[] a, int[] ks, Metrics m) {
+        int[] ranks = java.util.Arrays.copyOf(ks, ks.length);
+        m.addAlloc(ranks.length);
+        java.util.Arrays.sort(ranks);
+        multiSelectRec(a, 0, a.length, ranks, 0, ranks.length, m);
+        int[] res = new int[ks.length];
+        m.addAlloc(res.length);
+        for (int i = 0; i < ks.length; i++) res[i] = a[ks[i]];
+        return res;
+    }
+
+    public static int[] multiSelect(int[] a, int[] ks, Metrics m) {
+        int[] copy = java.util.Arrays.copyOf(a, a.length);
+        if (m != null) m.addAlloc(copy.length);
+        return multiSelectInPlace(copy, ks, m);
+    }
+
+    // Сортировка [lo, hi) без таймера: медиана ставится на место introselect, затем половины.
+    // O(n log n) и в худшем случае; для уровней QuantileSketch
+    static void sortRange(int[] a, int lo, int hi, Metrics m) {
+        while (hi - lo > CUTOFF) {
+            int mid = (lo + hi) >>> 1;
+            introselectRange(a, lo, hi, mid, m);
+            sortRange(a, lo, mid, m);
+            lo = mid + 1;
+        }
+        insertionSort(a, lo, hi, m);
+    }
+
+    // ranks[rlo, rhi) отсортированы и лежат в [lo, hi)
+    private static void multiSelectRec(int[] a, int lo, int hi, int[] ranks, int rlo, int rhi, Metrics m) {
+        m.onEnter(hi - lo);
+        while (rlo < rhi) {
+            int mid = (rlo + rhi) >>> 1;
+            int k = ranks[mid];
+            introselectRange(a, lo, hi, k, m);
+            int l = mid, r = mid + 1;
+            while (l > rlo && ranks[l - 1] == k) l--;
+            while (r < rhi && ranks[r] == k) r++;
+            multiSelectRec(a, lo, k, ranks, rlo, l, m);
+            lo = k + 1;
+            rlo = r;
+        }
+        m.onExit();
+    }
+
+    // k - абсолютный индекс в a, ищем среди [lo, hi). По возвращении a[k] стоит на своём
+    // месте: в [lo, k) не больше, в (k, hi) не меньше - на этом держится multiSelect.
+    private static int introselectRange(int[] a, int lo, int hi, int k, Metrics m) {
+        m.onEnter(hi - lo);
+        int stalls = 0;
+        while (hi - lo > CUTOFF) {
+            int n = hi - lo;
+            int pivot;
+            if (n > SAMPLE_THRESHOLD) {
+                // Floyd-Rivest: k-я статистика выборки вокруг k отличается от искомой на O(sqrt(s))
+                int i = k - lo + 1;
+                double z = Math.log(n);
+                double s = 0.5 * Math.exp(2 * z / 3);
+                double sd = 0.5 * Math.sqrt(z * s * (n - s) / n) * Math.signum(i - n / 2.0);
+                int sLo = Math.max(lo, (int) (k - i * s / n + sd));
+                int sHi = Math.min(hi - 1, (int) (k + (n - i) * s / n + sd));
+                pivot = introselectRange(a, sLo, sHi + 1, k, m);
+            } else {
+                pivot = median3(a[lo], a[lo + (n >>> 1)], a[hi - 1], m);
+            }
+
+            long bounds = partition3(a, lo, hi, pivot, m);
+            int lt = (int) (bounds >>> 32);
+            int gt = (int) bounds;
+            if (k < lt) hi = lt;
+            else if (k >= gt) lo = gt;
+            else {
+                m.onExit();
+                return pivot;
+            }
+
+            stalls = 4L * (hi - lo) > 3L * n ? stalls + 1 : 0;
+            if (stalls == STALL_LIMIT) {
+                int res = selectRec(a, lo, hi, k - lo, m);
+                m.onExit();
+                return res;
+            }
+        }
+        insertionSort(a, lo, hi, m);
+        m.onExit();
+        return a[k];
+    }
+
+    private static int median3(int x, int y, int z, Metrics m) {
+        m.onCompare();
+        if (x > y) { int t = x; x = y; y = t; }
+        m.onCompare();
+        if (y > z) {
+            y = z;
+            m.onCompare();
+            if (x > y) y = x;
+        }
+        return y;
+    }
+
+    private static int selectRec(int[] a, int lo, int hi, int k, Metrics m) {
+        m.onEnter(hi - lo);
+        int n = hi - lo;
+        if (n <= CUTOFF) {
+            insertionSort(a, lo, hi, m);
+            int res = a[lo + k];
+            m.onExit();
+            return res;
+        }
+
+        long t = m.phaseBegin(Phase.SELECT_MEDIAN_OF_MEDIANS);
+        int groups = (n + GROUP - 1) / GROUP;
+        for (int g = 0; g < groups; g++) {
+            int gs = lo + g * GROUP;
+            int ge = Math.min(gs + GROUP, hi);
+            insertionSort(a, gs, ge, m);
+            int medianIdx = gs + ((ge - gs) >> 1);
+            swap(a, lo + g, medianIdx, m);
+        }
+
+
+        int medianOfMedians = selectRec(a, lo, lo + groups, groups / 2, m);
+        m.phaseEnd(Phase.SELECT_MEDIAN_OF_MEDIANS, t, n);
+
+        long bounds = partition3(a, lo, hi, medianOfMedians, m);
+        int ltEnd = (int) (bounds >>> 32) - 1;
+        int gtBeg = (int) bounds;
+
+        int leftSize = ltEnd - lo + 1;
+        int midSize  = gtBeg - (ltEnd + 1);
+
+        int res;
+        if (k < leftSize) {
+            res = selectRec(a, lo, ltEnd + 1, k, m);
+        } else if (k < leftSize + midSize) {
+
+            res = medianOfMedians;
+        } else {
+            res = selectRec(a, gtBeg, hi, k - leftSize - midSize, m);
+        }
+        m.onExit();
+        return res;
+    }
+
+    // [lo, lt) < pivot, [lt, gt) == pivot, [gt, hi) > pivot; возвращает (lt << 32) | gt
+    private static long partition3(int[] a, int lo, int hi, int pivot, Metrics m) {
+        long t = m.phaseBegin(Phase.SELECT_PARTITION);
+        if (Kernels.enabled(m) && hi - lo >= Kernels.MIN_PARTITION) {
+            long bounds = Kernels.partition3(a, lo, hi, pivot);
+            m.phaseEnd(Phase.SELECT_PARTITION, t, hi - lo);
+            return bounds;
+        }
+        int lt = lo, i = lo, gt = hi - 1;
+        while (i <= gt) {
+            m.onCompare();
+            if (a[i] < pivot) {
+                swap(a, lt++, i++, m);
+            } else {
+                m.onCompare();
+                if (a[i] > pivot) {
+                    swap(a, i, gt--, m);
+                } else {
+                    i++;
+                }
+            }
+        }
+        m.phaseEnd(Phase.SELECT_PARTITION, t, hi - lo);
+        return ((long) lt << 32) | ((gt + 1) & 0xFFFFFFFFL);
+    }
+
+    public static int parallelSelect(int[] a, int k, Metrics m) {
+        return parallelSelect(a, k, m, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Параллельный выбор; a не изменяется. На каждом шаге по случайной выборке берутся
+     * два опорных, между которыми почти наверняка лежит k-я статистика, блоки параллельно
+     * считают элементы левее/правее, а затем по префиксным суммам параллельно копируют
+     * в буфер только ту часть, где лежит k. Обычно хватает одного-двух проходов по памяти.
+     * Если несколько шагов подряд отрезок почти не сжимается, опорный - медиана медиан
+     * пятёрок, тоже посчитанная параллельно.
+     */
+    public static int parallelSelect(int[] a, int k, Metrics m, ForkJoinPool pool) {
+        if (a == null || a.length == 0) throw new IllegalArgumentException("empty array");
+        if (k < 0 || k >= a.length) throw new IllegalArgumentException("k out of range");
+        if (pool == null) throw new IllegalArgumentException("pool is null");
+        if (m == null) m = Metrics.NOOP;
+        if (a.length < PARALLEL_THRESHOLD) return introselect(a, k, m);
+        m.startTimer();
+        int res = parallelSelectRange(a, a.length, k, m, pool);
+        m.stopTimer();
+        return res;
+    }
+
+    private static int parallelSelectRange(int[] a, int len, int k, Metrics m, ForkJoinPool pool) {
+        int[] src = a, bufA = null, bufB = null;
+        int stalls = 0;
+        while (len >= PARALLEL_THRESHOLD) {
+            int lowP, highP;
+            if (stalls < STALL_LIMIT) {
+                long p = samplePivots(src, len, k, m);
+                lowP = (int) (p >>> 32);
+                highP = (int) p;
+            } else {
+                lowP = highP = parallelMedianOfMedians(src, len, m, pool);
+            }
+
+            int blocks = (len + PARALLEL_BLOCK - 1) / PARALLEL_BLOCK;
+            int[] less = new int[blocks], upTo = new int[blocks];
+            Metrics[] parts = forks(m, blocks);
+            m.addAlloc(2L * blocks);
+            int[] from = src;
+            int size = len, lo = lowP, hi = highP;
+            pool.invoke(new ForBlocks(0, blocks, b -> {
+                Metrics bm = parts[b];
+                int end = Math.min(size, (b + 1) * PARALLEL_BLOCK);
+                int l = 0, u = 0;
+                for (int i = b * PARALLEL_BLOCK; i < end; i++) {
+                    int x = from[i];
+                    bm.onCompare();
+                    if (x < lo) l++;
+                    else {
+                        bm.onCompare();
+                        if (x <= hi) u++;
+                    }
+                }
+                less[b] = l;
+                upTo[b] = l + u;
+            }));
+            for (Metrics part : parts) if (part != m) m.merge(part);
+            m.onPass();
+
+            long totalLess = 0, totalUpTo = 0;
+            for (int b = 0; b < blocks; b++) {
+                totalLess += less[b];
+                totalUpTo += upTo[b];
+            }
+            int side;
+            int next;
+            if (k < totalLess) {
+                side = -1;
+                next = (int) totalLess;
+            } else if (k >= totalUpTo) {
+                side = 1;
+                next = len - (int) totalUpTo;
+                k -= (int) totalUpTo;
+            } else if (lowP == highP) {
+                return lowP;
+            } else {
+                side = 0;
+                next = (int) (totalUpTo - totalLess);
+                k -= (int) totalLess;
+            }
+
+            // смещение блока в буфере - префиксная сумма его счётчиков для выбранной стороны
+            int sum = 0;
+            for (int b = 0; b < blocks; b++) {
+                int blockLen = Math.min(len, (b + 1) * PARALLEL_BLOCK) - b * PARALLEL_BLOCK;
+                int c = side < 0 ? less[b] : side > 0 ? blockLen - upTo[b] : upTo[b] - less[b];
+                less[b] = sum;
+                sum += c;
+            }
+            int[] to;
+            if (src != bufA) {
+                if (bufA == null) {
+                    bufA = new int[next];
+                    m.addAlloc(next);
+                }
+                to = bufA;
+            } else {
+                if (bufB == null) {
+                    bufB = new int[next];
+                    m.addAlloc(next);
+                }
+                to = bufB;
+            }
+            int keep = side;
+            pool.invoke(new ForBlocks(0, blocks, b -> {
+                int end = Math.min(size, (b + 1) * PARALLEL_BLOCK);
+                int pos = less[b];
+                for (int i = b * PARALLEL_BLOCK; i < end; i++) {
+                    int x = from[i];
+                    int c = x < lo ? -1 : x > hi ? 1 : 0;
+                    if (c == keep) to[pos++] = x;
+                }
+            }));
+            m.addBytesMoved(4L * next);
+
+            stalls = 4L * next > 3L * len ? stalls + 1 : 0;
+            src = to;
+            len = next;
+        }
+        if (src == a) {
+            src = java.util.Arrays.copyOf(a, len);
+            m.addAlloc(len);
+        }
+        return introselectRange(src, 0, len, k, m);
+    }
+
+    // Два опорных из случайной выборки: ранг k в выборке плюс-минус запас порядка
+    // sqrt(s log n), поэтому k-я статистика почти всегда попадает между ними.
+    // Возвращает (low << 32) | high.
+    private static long samplePivots(int[] a, int len, int k, Metrics m) {
+        int s = (int) Math.min(MAX_SAMPLE, Math.cbrt((double) len * len) / 2);
+        int[] sample = new int[s];
+        m.addAlloc(s);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < s; i++) sample[i] = a[rnd.nextInt(len)];
+        int r = (int) ((long) k * s / len);
+        int gap = (int) Math.ceil(Math.sqrt(s * Math.log(len)));
+        int[] p = multiSelectRange(sample, new int[]{Math.max(0, r - gap), Math.min(s - 1, r + gap)}, m);
+        return ((long) p[0] << 32) | (p[1] & 0xFFFFFFFFL);
+    }
+
+    // Медианы пятёрок считаются блоками параллельно, a не трогается.
+    private static int parallelMedianOfMedians(int[] a, int len, Metrics m, ForkJoinPool pool) {
+        int groups = len / GROUP;
+        int[] medians = new int[groups];
+        m.addAlloc(groups);
+        int perBlock = PARALLEL_BLOCK / GROUP;
+        int blocks = (groups + perBlock - 1) / perBlock;
+        Metrics[] parts = forks(m, blocks);
+        pool.invoke(new ForBlocks(0, blocks, b -> {
+            Metrics bm = parts[b];
+            int[] g = new int[GROUP];
+            int end = Math.min(groups, (b + 1) * perBlock);
+            for (int i = b * perBlock; i < end; i++) {
+                System.arraycopy(a, i * GROUP, g, 0, GROUP);
+                insertionSort(g, 0, GROUP, bm);
+                medians[i] = g[GROUP / 2];
+            }
+        }));
+        for (Metrics part : parts) if (part != m) m.merge(part);
+        return groups >= PARALLEL_THRESHOLD
+                ? parallelSelectRange(medians, groups, groups / 2, m, pool)
+                : introselectRange(medians, 0, groups, groups / 2, m);
+    }
+
+    // У каждого блока свои счётчики, после invoke они складываются в m
+    private static Metrics[] forks(Metrics m, int blocks) {
+        Metrics[] parts = new Metrics[blocks];
+        for (int b = 0; b < blocks; b++) parts[b] = m.fork();
+        return parts;
+    }
+
+    private static void insertionSort(int[] a, int lo, int hi, Metrics m) {
+        if (Kernels.enabled(m) && hi - lo <= Kernels.MAX_NETWORK) {
+            Kernels.sortSmall(a, lo, hi);
+            return;
+        }
+        for (int i = lo + 1; i < hi; i++) {
+            int x = a[i];
+            int j = i - 1;
+            while (j >= lo) {
+                m.onCompare();
+                if (a[j] <= x) break;
+                a[j + 1] = a[j];
+                m.onSwap();
+                j--;
+            }
+            a[j + 1] = x;
+        }
+    }
+
+    private static void swap(int[] a, int i, int j, Metrics m) {
+        if (i == j) return;
+        int t = a[i]; a[i] = a[j]; a[j] = t;
+        m.onSwap();
+    }
+
+
+    public static void main(String[] args) {
+        int[] a = {7,1,9,3,3,5,8,2,6,4};
+        Metrics m = new Metrics();
+        int k = 4;
+        int v = select(a, k, m);
+        System.out.println("k=" + k + " -> " + v);
+        System.out.println(m);
+    }
+}
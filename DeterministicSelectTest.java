@@ -1,56 +1,163 @@
-package algo.select;
-
-import algo.common.Metrics;
-import org.junit.jupiter.api.Test;
-
-import java.util.Arrays;
-import java.util.Random;
-
-import static org.junit.jupiter.api.Assertions.*;
-
-public class DeterministicSelectTest {
-
-    @Test
-    void tinyArrays() {
-        int[] a = {5};
-        assertEquals(5, DeterministicSelect.select(a, 0, new Metrics()));
-
-        int[] b = {2,1};
-        assertEquals(1, DeterministicSelect.select(b, 0, new Metrics()));
-        assertEquals(2, DeterministicSelect.select(b, 1, new Metrics()));
-    }
-
-    @Test
-    void randomTrials() {
-        Random rnd = new Random(42);
-        for (int t = 0; t < 100; t++) {
-            int n = 50 + rnd.nextInt(450);
-            int[] a = rnd.ints(n, -10000, 10000).toArray();
-            int[] b = Arrays.copyOf(a, a.length);
-            Arrays.sort(b);
-            int k = rnd.nextInt(n);
-            int got = DeterministicSelect.select(a, k, new Metrics());
-            assertEquals(b[k], got, "trial " + t);
-        }
-    }
-
-    @Test
-    void withDuplicates() {
-        int[] a = {4,4,4,4,4,4,4,3,5,4,4,4,6,2,4};
-        int[] b = Arrays.copyOf(a, a.length);
-        Arrays.sort(b);
-        for (int k = 0; k < a.length; k++) {
-            assertEquals(b[k], DeterministicSelect.select(a, k, new Metrics()));
-        }
-    }
-
-    @Test
-    void monotoneAdversarial() {
-        int n = 5000;
-        int[] a = new int[n];
-        for (int i = 0; i < n; i++) a[i] = i;
-        int mid = n / 2;
-        int val = DeterministicSelect.select(a, mid, new Metrics());
-        assertEquals(mid, val);
-    }
-}
+package algo.select;
+
+import algo.common.ConcurrentMetrics;
+import algo.common.Inputs;
+import algo.common.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeterministicSelectTest {
+
+    @Test
+    void tinyArrays() {
+        int[] a = {5};
+        assertEquals(5, DeterministicSelect.select(a, 0, new Metrics()));
+
+        int[] b = {2,1};
+        assertEquals(1, DeterministicSelect.select(b, 0, new Metrics()));
+        assertEquals(2, DeterministicSelect.select(b, 1, new Metrics()));
+    }
+
+    @Test
+    void randomTrials() {
+        Random rnd = new Random(42);
+        for (int t = 0; t < 100; t++) {
+            int n = 50 + rnd.nextInt(450);
+            int[] a = rnd.ints(n, -10000, 10000).toArray();
+            int[] b = Arrays.copyOf(a, a.length);
+            Arrays.sort(b);
+            int k = rnd.nextInt(n);
+            int got = DeterministicSelect.select(a, k, new Metrics());
+            assertEquals(b[k], got, "trial " + t);
+        }
+    }
+
+    @Test
+    void withDuplicates() {
+        int[] a = {4,4,4,4,4,4,4,3,5,4,4,4,6,2,4};
+        int[] b = Arrays.copyOf(a, a.length);
+        Arrays.sort(b);
+        for (int k = 0; k < a.length; k++) {
+            assertEquals(b[k], DeterministicSelect.select(a, k, new Metrics()));
+        }
+    }
+
+    @Test
+    void monotoneAdversarial() {
+        int n = 5000;
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) a[i] = i;
+        int mid = n / 2;
+        int val = DeterministicSelect.select(a, mid, new Metrics());
+        assertEquals(mid, val);
+    }
+
+    @Test
+    void introselectMatchesSort() {
+        Random rnd = new Random(7);
+        for (Inputs.Distribution d : Inputs.Distribution.values()) {
+            for (int n : new int[]{1, 33, 601, 5000, 100_000}) {
+                int[] a = Inputs.ints(d, n, rnd.nextLong());
+                int[] b = Arrays.copyOf(a, n);
+                Arrays.sort(b);
+                for (int k : new int[]{0, n / 100, n / 2, n * 99 / 100, n - 1}) {
+                    assertEquals(b[k], DeterministicSelect.introselect(a, k, new Metrics()), d + " n=" + n + " k=" + k);
+                }
+            }
+        }
+    }
+
+    @Test
+    void introselectCheaperThanMedianOfMedians() {
+        int[] a = new Random(11).ints(200_000).toArray();
+        int k = a.length * 99 / 100;
+        Metrics mom = new Metrics();
+        Metrics intro = new Metrics();
+        assertEquals(DeterministicSelect.select(a, k, mom), DeterministicSelect.introselect(a, k, intro));
+        assertTrue(2 * intro.comparisons < mom.comparisons, intro.comparisons + " vs " + mom.comparisons);
+    }
+
+    @Test
+    void multiSelectPercentiles() {
+        Random rnd = new Random(3);
+        for (Inputs.Distribution d : Inputs.Distribution.values()) {
+            int n = 50_000;
+            int[] a = Inputs.ints(d, n, rnd.nextLong());
+            int[] before = Arrays.copyOf(a, n);
+            int[] b = Arrays.copyOf(a, n);
+            Arrays.sort(b);
+            int[] ks = {n * 99 / 100, n / 2, n - 1, n * 9 / 10, 0, n / 2, n * 999 / 1000, n * 95 / 100};
+            int[] got = DeterministicSelect.multiSelect(a, ks, new Metrics());
+            for (int i = 0; i < ks.length; i++) assertEquals(b[ks[i]], got[i], d + " k=" + ks[i]);
+            assertArrayEquals(before, a, "input must not be modified");
+        }
+    }
+
+    @Test
+    void multiSelectCheaperThanRepeatedSelect() {
+        int n = 200_000;
+        int[] a = new Random(5).ints(n).toArray();
+        int[] ks = new int[32];
+        for (int i = 0; i < ks.length; i++) ks[i] = (int) ((long) n * (i + 1) / (ks.length + 1));
+        Metrics batch = new Metrics();
+        Metrics single = new Metrics();
+        int[] got = DeterministicSelect.multiSelect(a, ks, batch);
+        for (int i = 0; i < ks.length; i++) assertEquals(DeterministicSelect.introselect(a, ks[i], single), got[i]);
+        assertTrue(3 * batch.comparisons < single.comparisons, batch.comparisons + " vs " + single.comparisons);
+        assertTrue(batch.allocations < 2L * n);
+    }
+
+    @Test
+    void multiSelectRejectsBadRank() {
+        assertThrows(IllegalArgumentException.class,
+                () -> DeterministicSelect.multiSelect(new int[]{1, 2, 3}, new int[]{0, 3}, null));
+    }
+
+    @Test
+    void parallelMatchesSort() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Random rnd = new Random(13);
+            for (Inputs.Distribution d : Inputs.Distribution.values()) {
+                int n = 1 << 19;
+                int[] a = Inputs.ints(d, n, rnd.nextLong());
+                int[] before = Arrays.copyOf(a, n);
+                int[] b = Arrays.copyOf(a, n);
+                Arrays.sort(b);
+                for (int k : new int[]{0, n / 2, n * 99 / 100, n - 1, rnd.nextInt(n)}) {
+                    Metrics m = new ConcurrentMetrics();
+                    assertEquals(b[k], DeterministicSelect.parallelSelect(a, k, m, pool), d + " k=" + k);
+                    assertTrue(m.snapshot().comparisons > 0);
+                }
+                assertArrayEquals(before, a, "input must not be modified");
+            }
+            int[] same = new int[1 << 18];
+            Arrays.fill(same, 7);
+            assertEquals(7, DeterministicSelect.parallelSelect(same, 12345, null, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // выборка опорных не перезапускает таймер: elapsedNanos - весь parallelSelect
+    @Test
+    void parallelSelectTimesWholeRun() {
+        int[] a = new Random(14).ints(1 << 19).toArray();
+        int[] starts = new int[1];
+        Metrics m = new Metrics() {
+            @Override public void startTimer() {
+                starts[0]++;
+                super.startTimer();
+            }
+        };
+        int[] b = Arrays.copyOf(a, a.length);
+        Arrays.sort(b);
+        assertEquals(b[1000], DeterministicSelect.parallelSelect(a, 1000, m));
+        assertEquals(1, starts[0]);
+    }
+}
\ No newline at end of file
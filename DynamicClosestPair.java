@@ -0,0 +1,206 @@
+package algo.pair;
+
+import algo.common.Metrics;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Ближайшая пара под вставками и удалениями точек. Различные точки лежат плотно в xs/ys
+ * и в сетке GridClosestPair.Grid с ячейкой не меньше текущего расстояния delta между
+ * различными точками: новой точке хватает 3x3 соседних ячеек, то есть O(1) при ограниченной
+ * плотности. Совпадающие точки хранятся один раз со счётчиком: пока есть хоть один повтор,
+ * ответ 0, а сетка остаётся под наименьшее положительное расстояние - иначе при delta = 0
+ * ячейка перестала бы уменьшаться и окрестность росла бы без предела.
+ * Сетка перестраивается, только когда delta упало вдвое относительно ячейки.
+ * Удаление точки вне ближайшей пары - O(1); удаление точки из пары пересчитывает ответ
+ * за ожидаемое O(n), но для случайной точки это случается с вероятностью 2/n.
+ * Запрос ответа - O(1).
+ */
+public final class DynamicClosestPair {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Metrics m;
+    private final SplittableRandom rnd = new SplittableRandom();
+    private final GridClosestPair.Grid grid;
+    private double[] xs = new double[INITIAL_CAPACITY], ys = new double[INITIAL_CAPACITY];
+    // сколько раз вставлена точка; повторённые (count >= 2) - в dups, dupAt[i] - место в нём или -1
+    private int[] count = new int[INITIAL_CAPACITY];
+    private int[] dups = new int[INITIAL_CAPACITY], dupAt = new int[INITIAL_CAPACITY];
+    private int size, total, dupCount;
+    private double best = Double.POSITIVE_INFINITY; // квадрат расстояния между различными точками
+    private int bi = -1, bj = -1;
+    private ClosestPair.Result cached;
+
+    public DynamicClosestPair() {
+        this(null);
+    }
+
+    public DynamicClosestPair(Metrics m) {
+        this.m = m == null ? Metrics.NOOP : m;
+        grid = new GridClosestPair.Grid(INITIAL_CAPACITY, this.m);
+        grid.rebuild(xs, ys, 0, 1.0);
+        this.m.addAlloc(5L * INITIAL_CAPACITY);
+    }
+
+    // все точки, с повторами
+    public int size() { return total; }
+
+    public boolean hasPair() { return total >= 2; }
+
+    public ClosestPair.Result closest() {
+        if (total < 2) throw new IllegalStateException("need >= 2 points");
+        if (cached == null) {
+            if (dupCount > 0) {
+                Point2D p = point(dups[0]);
+                cached = new ClosestPair.Result(p, p, 0);
+            } else {
+                cached = new ClosestPair.Result(point(bi), point(bj), Math.sqrt(best));
+            }
+        }
+        return cached;
+    }
+
+    public void insert(Point2D p) {
+        if (p == null) throw new IllegalArgumentException("point is null");
+        double x = p.x(), y = p.y();
+        long cx = grid.cell(x), cy = grid.cell(y);
+        total++;
+        int same = find(x, y, cx, cy);
+        if (same >= 0) {
+            if (++count[same] == 2) {
+                dupAt[same] = dupCount;
+                dups[dupCount++] = same;
+                cached = null;
+            }
+            return;
+        }
+
+        if (size == xs.length) grow();
+        int id = size++;
+        xs[id] = x;
+        ys[id] = y;
+        count[id] = 1;
+        dupAt[id] = -1;
+        if (size == 2) {
+            setBest(dist2(0, 1), 0, 1);
+            rebuildGrid();
+            return;
+        }
+        if (size > 2) {
+            // все точки в сетке отличны от новой, поэтому найденное расстояние положительно
+            int found = -1;
+            double d = best;
+            for (long gx = cx - 1; gx <= cx + 1; gx++) {
+                for (long gy = cy - 1; gy <= cy + 1; gy++) {
+                    for (int q = grid.head(gx, gy); q >= 0; q = grid.next[q]) {
+                        double dq = dist2(id, q);
+                        if (dq < d) {
+                            d = dq;
+                            found = q;
+                        }
+                    }
+                }
+            }
+            if (found >= 0) {
+                setBest(d, found, id);
+                double cell = grid.cellSize();
+                if (4 * d < cell * cell) {
+                    rebuildGrid();
+                    return;
+                }
+            }
+        }
+        grid.insert(id, cx, cy);
+    }
+
+    /** Удаляет одну точку с такими координатами; false, если такой нет. */
+    public boolean remove(Point2D p) {
+        if (p == null) throw new IllegalArgumentException("point is null");
+        double x = p.x(), y = p.y();
+        int id = find(x, y, grid.cell(x), grid.cell(y));
+        if (id < 0) return false;
+        total--;
+        if (count[id] > 1) {
+            if (--count[id] == 1) dropDup(id);
+            return true;
+        }
+        grid.remove(id, grid.cell(x), grid.cell(y));
+        boolean inPair = id == bi || id == bj;
+
+        // последняя точка переезжает на место удалённой, массивы остаются плотными
+        int last = --size;
+        if (id != last) {
+            grid.remove(last, grid.cell(xs[last]), grid.cell(ys[last]));
+            xs[id] = xs[last];
+            ys[id] = ys[last];
+            count[id] = count[last];
+            dupAt[id] = dupAt[last];
+            if (dupAt[id] >= 0) dups[dupAt[id]] = id;
+            grid.insert(id, grid.cell(xs[id]), grid.cell(ys[id]));
+            if (bi == last) bi = id;
+            if (bj == last) bj = id;
+        }
+
+        if (size < 2) {
+            setBest(Double.POSITIVE_INFINITY, -1, -1);
+        } else if (inPair) {
+            // delta могло только вырасти: пересчёт с нуля и сетка под новую ячейку
+            ClosestPair.IndexResult r = GridClosestPair.closest(xs, ys, size, rnd.nextLong(), m);
+            setBest(dist2(r.i(), r.j()), r.i(), r.j());
+            rebuildGrid();
+        }
+        cached = null;
+        return true;
+    }
+
+    // точка с такими координатами среди различных или -1
+    private int find(double x, double y, long cx, long cy) {
+        for (int q = grid.head(cx, cy); q >= 0; q = grid.next[q]) {
+            if (xs[q] == x && ys[q] == y) return q;
+        }
+        return -1;
+    }
+
+    private void dropDup(int id) {
+        int at = dupAt[id], moved = dups[--dupCount];
+        dups[at] = moved;
+        dupAt[moved] = at;
+        dupAt[id] = -1;
+        cached = null;
+    }
+
+    private void setBest(double d2, int i, int j) {
+        best = d2;
+        bi = i;
+        bj = j;
+        cached = null;
+    }
+
+    // ячейка равна delta; пока различных точек меньше двух, остаётся прежней
+    private void rebuildGrid() {
+        double cell = best < Double.POSITIVE_INFINITY ? Math.sqrt(best) : grid.cellSize();
+        grid.rebuild(xs, ys, size, cell);
+    }
+
+    private void grow() {
+        int cap = 2 * xs.length;
+        xs = Arrays.copyOf(xs, cap);
+        ys = Arrays.copyOf(ys, cap);
+        count = Arrays.copyOf(count, cap);
+        dups = Arrays.copyOf(dups, cap);
+        dupAt = Arrays.copyOf(dupAt, cap);
+        grid.ensurePoints(cap);
+        m.addAlloc(5L * cap);
+    }
+
+    private double dist2(int i, int j) {
+        m.onCompare();
+        double dx = xs[i] - xs[j], dy = ys[i] - ys[j];
+        return dx * dx + dy * dy;
+    }
+
+    private Point2D point(int i) {
+        return new Point2D(xs[i], ys[i]);
+    }
+}
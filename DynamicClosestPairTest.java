@@ -0,0 +1,113 @@
+package algo.pair;
+
+import algo.common.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DynamicClosestPairTest {
+
+    private static double brute(List<Point2D> pts) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < pts.size(); i++) {
+            for (int j = i + 1; j < pts.size(); j++) {
+                Point2D a = pts.get(i), b = pts.get(j);
+                best = Math.min(best, Math.hypot(a.x() - b.x(), a.y() - b.y()));
+            }
+        }
+        return best;
+    }
+
+    @Test
+    void randomInsertsAndRemovals() {
+        Random rnd = new Random(77);
+        DynamicClosestPair dyn = new DynamicClosestPair(new Metrics());
+        List<Point2D> live = new ArrayList<>();
+        for (int step = 0; step < 4000; step++) {
+            if (live.size() < 3 || rnd.nextInt(3) > 0) {
+                // целая сетка координат даёт и совпадающие точки
+                Point2D p = new Point2D(rnd.nextInt(300), rnd.nextInt(300));
+                dyn.insert(p);
+                live.add(p);
+            } else {
+                Point2D p = rnd.nextBoolean()
+                        ? live.remove(rnd.nextInt(live.size()))
+                        : live.remove(live.indexOf(dyn.closest().a));
+                assertTrue(dyn.remove(p));
+            }
+            assertEquals(live.size(), dyn.size());
+            if (live.size() >= 2) {
+                ClosestPair.Result r = dyn.closest();
+                // перебор O(n^2) - через шаг, иначе тест идёт десятки секунд
+                if (step % 40 == 0 || step == 3999) assertEquals(brute(live), r.dist, 1e-9, "step " + step);
+                assertEquals(r.dist, Math.hypot(r.a.x() - r.b.x(), r.a.y() - r.b.y()), 1e-9);
+            } else {
+                assertFalse(dyn.hasPair());
+            }
+        }
+    }
+
+    @Test
+    void removeMissingAndDrainToEmpty() {
+        DynamicClosestPair dyn = new DynamicClosestPair();
+        assertFalse(dyn.remove(new Point2D(1, 1)));
+        dyn.insert(new Point2D(0, 0));
+        dyn.insert(new Point2D(0, 3));
+        dyn.insert(new Point2D(4, 0));
+        assertEquals(3.0, dyn.closest().dist);
+        assertFalse(dyn.remove(new Point2D(0, 2)));
+        assertTrue(dyn.remove(new Point2D(0, 3)));
+        assertEquals(4.0, dyn.closest().dist);
+        assertTrue(dyn.remove(new Point2D(0, 0)));
+        assertThrows(IllegalStateException.class, dyn::closest);
+        assertTrue(dyn.remove(new Point2D(4, 0)));
+        assertEquals(0, dyn.size());
+    }
+
+    // совпавшие точки дают ответ 0, но сетка остаётся под наименьшее положительное расстояние
+    @Test
+    void duplicatesKeepGridFine() {
+        Random rnd = new Random(5);
+        Metrics m = new Metrics();
+        DynamicClosestPair dyn = new DynamicClosestPair(m);
+        dyn.insert(new Point2D(0, 0));
+        dyn.insert(new Point2D(1000, 1000));
+        dyn.insert(new Point2D(0, 0));
+        assertEquals(0.0, dyn.closest().dist);
+        int n = 50_000;
+        for (int i = 0; i < n; i++) dyn.insert(new Point2D(rnd.nextDouble() * 1000, rnd.nextDouble() * 1000));
+        assertEquals(n + 3, dyn.size());
+        assertEquals(0.0, dyn.closest().dist);
+        assertTrue(m.comparisons < 100L * n, "comparisons=" + m.comparisons);
+
+        // последний повтор ушёл - ответ снова положительный
+        assertTrue(dyn.remove(new Point2D(0, 0)));
+        assertTrue(dyn.closest().dist > 0);
+        assertTrue(dyn.remove(new Point2D(0, 0)));
+        assertFalse(dyn.remove(new Point2D(0, 0)));
+    }
+
+    @Test
+    void manyPointsStayCheap() {
+        Random rnd = new Random(4);
+        Metrics m = new Metrics();
+        DynamicClosestPair dyn = new DynamicClosestPair(m);
+        List<Point2D> pts = new ArrayList<>();
+        int n = 100_000;
+        for (int i = 0; i < n; i++) {
+            Point2D p = new Point2D(rnd.nextDouble() * 1e6, rnd.nextDouble() * 1e6);
+            pts.add(p);
+            dyn.insert(p);
+        }
+        Collections.shuffle(pts, rnd);
+        for (int i = 0; i < n / 2; i++) assertTrue(dyn.remove(pts.get(i)));
+        Point2D[] rest = pts.subList(n / 2, n).toArray(new Point2D[0]);
+        assertEquals(ClosestPair.closest(rest, null).dist, dyn.closest().dist, 1e-9);
+        assertTrue(m.comparisons < 100L * n, "comparisons=" + m.comparisons);
+    }
+}
\ No newline at end of file
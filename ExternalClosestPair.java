@@ -0,0 +1,428 @@
+package algo.pair;
+
+import algo.common.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Ближайшая пара для файла точек, который не помещается в кучу. Файл - записи по 16 байт
+// (double x, double y, little-endian), ответ - номера записей.
+// 1) По выборке выбираются границы вертикальных полос, примерно по chunkPoints / 2 точек
+//    в полосе. Точки упорядочены по (x, номер), поэтому делятся и совпадающие x.
+// 2) Проход раскладывает записи (x, y, номер) по файлам полос, не больше MAX_FANOUT файлов
+//    сразу; полоса больше chunkPoints раскладывается так же ещё раз.
+// 3) Полосы слева направо решаются в памяти движком ClosestPair. Точки ближе delta к правой
+//    границе переносятся дальше в файле, упорядоченном по y, и пары через границу ищутся
+//    слиянием этого файла с полосой по y, как в полосе обычного divide-and-conquer.
+// В куче одновременно одна полоса (не больше chunkPoints точек), выборка для границ и окно
+// слияния. Перенос ограничен только диском: если точки почти на одной вертикали, он
+// читается и переписывается на каждой полосе - O(n) ввода-вывода на полосу.
+// В Metrics: ioBytes - байты чтения и записи, passes - проходы по данным.
+public final class ExternalClosestPair {
+    public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    public static final int POINT_BYTES = 16;
+    private static final int SLAB_RECORD_BYTES = 20;
+    private static final int DEFAULT_CHUNK_POINTS = 1 << 21;
+    // открытых файлов при раскладке, с запасом под обычный лимит в 1024 дескриптора
+    private static final int MAX_FANOUT = 256;
+    private static final int SAMPLE_PER_SLAB = 256;
+    private static final int MIN_SAMPLE = 1 << 14;
+    private static final long WRITE_BUDGET_BYTES = 64L << 20;
+    private static final int STRIP_BUFFER_BYTES = (1 << 16) - (1 << 16) % SLAB_RECORD_BYTES;
+    private static final int MAP_WINDOW_POINTS = 1 << 24;
+
+    private ExternalClosestPair() {}
+
+    public static ClosestPair.IndexResult closest(Path in, Metrics m) throws IOException {
+        return closest(in, DEFAULT_CHUNK_POINTS, null, m);
+    }
+
+    // chunkPoints - сколько точек решается в памяти за раз; tmpDir == null - каталог входного файла
+    public static ClosestPair.IndexResult closest(Path in, int chunkPoints, Path tmpDir, Metrics m) throws IOException {
+        if (in == null) throw new IllegalArgumentException("path is null");
+        if (chunkPoints < 64 || chunkPoints > 1 << 26) throw new IllegalArgumentException("bad chunk size");
+        if (m == null) m = Metrics.NOOP;
+        if (tmpDir == null) tmpDir = in.toAbsolutePath().getParent();
+        m.startTimer();
+
+        ClosestPair.IndexResult res;
+        List<Path> temps = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(in, StandardOpenOption.READ)) {
+            long bytes = ch.size();
+            if (bytes % POINT_BYTES != 0) {
+                throw new IllegalArgumentException("file size is not a multiple of " + POINT_BYTES + ": " + bytes);
+            }
+            long n = bytes / POINT_BYTES;
+            if (n < 2) throw new IllegalArgumentException("need >= 2 points");
+            if (n > Integer.MAX_VALUE) throw new IllegalArgumentException("too many points: " + n);
+            Records reader = new Records(ch, n, POINT_BYTES, m);
+            if (n <= chunkPoints) {
+                res = inMemory(reader, (int) n, m);
+            } else {
+                Sweep sw = new Sweep(chunkPoints, tmpDir, temps, m);
+                sw.partition(reader, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0);
+                m.onPass();
+                res = sw.best.result();
+            }
+        } finally {
+            for (Path p : temps) Files.deleteIfExists(p);
+        }
+        m.stopTimer();
+        return res;
+    }
+
+    private static ClosestPair.IndexResult inMemory(Records r, int n, Metrics m) throws IOException {
+        Slab s = new Slab(n, m);
+        s.read(r, n);
+        m.onPass();
+        ClosestPair.Best best = new ClosestPair.Best();
+        s.solve(n, best, m);
+        return best.result();
+    }
+
+    // Границы не больше чем для k частей по выборке не больше chunk точек. Выборка расслоена -
+    // по случайной точке из каждой из s равных долей файла, поэтому точки в ней различны.
+    // После сортировки по x совпадающие x упорядочиваются по номеру - порядок (x, номер).
+    // Граница b стоит на позиции b * s / k >= 1: в первой части есть точка выборки, а в
+    // последней её нет, так что каждая часть меньше исходной и рекурсия конечна.
+    private static Splitters splitters(Records r, int k, int chunk, Metrics m) throws IOException {
+        int s = (int) Math.min(Math.min(r.n, chunk), Math.max(MIN_SAMPLE, (long) k * SAMPLE_PER_SLAB));
+        k = Math.min(k, s);
+        double[] x = new double[s];
+        int[] id = new int[s];
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < s; i++) {
+            long lo = i * r.n / s, hi = (i + 1) * r.n / s;
+            long p = lo + rnd.nextLong(hi - lo);
+            x[i] = r.x(p);
+            id[i] = r.id(p);
+        }
+        m.addAlloc(5L * s);
+        new ClosestPair.Engine(x, new double[s], id, new double[s], new double[s], new int[s]).sortByX(0, s, m);
+        for (int i = 0, j; i < s; i = j) {
+            j = i + 1;
+            while (j < s && x[j] == x[i]) j++;
+            if (j - i > 1) Arrays.sort(id, i, j);
+        }
+
+        Splitters sp = new Splitters(k - 1);
+        for (int b = 1; b < k; b++) {
+            int pos = (int) ((long) b * s / k);
+            sp.x[b - 1] = x[pos];
+            sp.id[b - 1] = id[pos];
+        }
+        return sp;
+    }
+
+    private static Path[] scatter(Records r, Splitters sp, long[] counts, Path tmpDir, List<Path> temps, Metrics m)
+            throws IOException {
+        int slabs = counts.length;
+        int bufBytes = (int) Math.max(1 << 12, Math.min(1 << 20, WRITE_BUDGET_BYTES / slabs));
+        bufBytes -= bufBytes % SLAB_RECORD_BYTES;
+        Path[] files = new Path[slabs];
+        SlabWriter[] writers = new SlabWriter[slabs];
+        try {
+            for (int s = 0; s < slabs; s++) {
+                files[s] = Files.createTempFile(tmpDir, "slab", ".bin");
+                temps.add(files[s]);
+                writers[s] = new SlabWriter(files[s], bufBytes, m);
+            }
+            for (long i = 0; i < r.n; i++) {
+                double x = r.x(i);
+                int id = r.id(i);
+                int s = sp.slabOf(x, id, m);
+                writers[s].write(x, r.y(i), id);
+                counts[s]++;
+            }
+        } finally {
+            for (SlabWriter w : writers) if (w != null) w.close();
+        }
+        return files;
+    }
+
+    // Обход полос слева направо: лучшая пара, буфер полосы и файл перенесённых точек.
+    private static final class Sweep {
+        final ClosestPair.Best best = new ClosestPair.Best();
+        private final int chunk;
+        private final Path tmpDir;
+        private final List<Path> temps;
+        private final Metrics m;
+        private final Window window;
+        private Slab slab;
+        private Path strip;
+        private long carried;
+        private int levels;
+
+        Sweep(int chunk, Path tmpDir, List<Path> temps, Metrics m) {
+            this.chunk = chunk;
+            this.tmpDir = tmpDir;
+            this.temps = temps;
+            this.m = m;
+            this.window = new Window(m);
+        }
+
+        // записи r лежат между границами left и right; каждый новый уровень раскладки - проход
+        void partition(Records r, double left, double right, int depth) throws IOException {
+            if (r.n <= chunk) {
+                slab(r, (int) r.n, left, right);
+                return;
+            }
+            Splitters sp = splitters(r, (int) Math.min(MAX_FANOUT, (2 * r.n + chunk - 1) / chunk), chunk, m);
+            int k = sp.x.length + 1;
+            long[] counts = new long[k];
+            Path[] files = scatter(r, sp, counts, tmpDir, temps, m);
+            if (depth == levels) {
+                levels++;
+                m.onPass();
+            }
+            for (int s = 0; s < k; s++) {
+                try (FileChannel ch = FileChannel.open(files[s], StandardOpenOption.READ)) {
+                    partition(new Records(ch, counts[s], SLAB_RECORD_BYTES, m),
+                            s == 0 ? left : sp.x[s - 1], s == k - 1 ? right : sp.x[s], depth + 1);
+                }
+                Files.delete(files[s]);
+            }
+        }
+
+        private void slab(Records r, int cnt, double left, double right) throws IOException {
+            if (cnt == 0) return;
+            if (slab == null || slab.x.length < cnt) slab = new Slab(Math.min(chunk, cnt + cnt / 4), m);
+            slab.read(r, cnt);
+            slab.solve(cnt, best, m);
+            cross(cnt, left, right);
+        }
+
+        // Слияние перенесённых точек с полосой (она уже отсортирована по y). Точки ближе delta
+        // к левой границе проходят через окно - это пары через границу; точки ближе delta
+        // к правой границе пишутся в новый перенос, тоже по возрастанию y.
+        private void cross(int cnt, double left, double right) throws IOException {
+            Path next = null;
+            SlabWriter out = null;
+            long kept = 0;
+            window.clear();
+            try (FileChannel in = strip == null ? null : FileChannel.open(strip, StandardOpenOption.READ)) {
+                Records c = in == null ? null : new Records(in, carried, SLAB_RECORD_BYTES, m);
+                long ci = 0;
+                int pi = 0;
+                while (ci < carried || pi < cnt) {
+                    double x, y;
+                    int id;
+                    if (pi == cnt || (ci < carried && c.y(ci) <= slab.y[pi])) {
+                        x = c.x(ci);
+                        y = c.y(ci);
+                        id = c.id(ci);
+                        ci++;
+                    } else {
+                        x = slab.x[pi];
+                        y = slab.y[pi];
+                        id = slab.id[pi];
+                        pi++;
+                    }
+                    double dx = x - left;
+                    if (carried > 0 && dx * dx < best.d2) window.add(x, y, id, best);
+                    dx = right - x;
+                    if (dx * dx < best.d2) {
+                        if (out == null) {
+                            next = Files.createTempFile(tmpDir, "strip", ".bin");
+                            temps.add(next);
+                            out = new SlabWriter(next, STRIP_BUFFER_BYTES, m);
+                        }
+                        out.write(x, y, id);
+                        kept++;
+                    }
+                }
+            } finally {
+                if (out != null) out.close();
+            }
+            if (strip != null) Files.delete(strip);
+            strip = next;
+            carried = kept;
+        }
+    }
+
+    // Окно слияния: точки ближе delta к границе с разницей по y меньше delta. Перенесённые
+    // точки попарно не ближе delta, точки полосы тоже, поэтому в окне их O(1).
+    private static final class Window {
+        private final Metrics m;
+        private double[] x = new double[16], y = new double[16];
+        private int[] id = new int[16];
+        private int head, tail;
+
+        Window(Metrics m) {
+            this.m = m;
+            m.addAlloc(3L * x.length);
+        }
+
+        void clear() {
+            head = tail = 0;
+        }
+
+        void add(double px, double py, int pid, ClosestPair.Best best) {
+            while (head < tail) {
+                double dy = py - y[head];
+                if (dy * dy < best.d2) break;
+                head++;
+            }
+            if (tail == x.length) {
+                int live = tail - head;
+                double[] ox = x, oy = y;
+                int[] oid = id;
+                if (2 * live > x.length) {
+                    x = new double[2 * x.length];
+                    y = new double[x.length];
+                    id = new int[x.length];
+                    m.addAlloc(3L * x.length);
+                }
+                System.arraycopy(ox, head, x, 0, live);
+                System.arraycopy(oy, head, y, 0, live);
+                System.arraycopy(oid, head, id, 0, live);
+                head = 0;
+                tail = live;
+            }
+            x[tail] = px;
+            y[tail] = py;
+            id[tail] = pid;
+            for (int i = head; i < tail; i++) ClosestPair.Engine.check(x, y, id, i, tail, best, m);
+            tail++;
+        }
+    }
+
+    // граница i: точки с (x, номер) меньше (x[i], id[i]) - левее
+    private static final class Splitters {
+        final double[] x;
+        final int[] id;
+
+        Splitters(int count) {
+            x = new double[count];
+            id = new int[count];
+        }
+
+        // число границ, не больших (px, pid)
+        int slabOf(double px, int pid, Metrics m) {
+            int lo = 0, hi = x.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                m.onCompare();
+                if (x[mid] < px || (x[mid] == px && id[mid] <= pid)) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    // Точки одной полосы и буферы движка ClosestPair.
+    private static final class Slab {
+        final double[] x, y, tx, ty;
+        final int[] id, tid;
+
+        Slab(int cap, Metrics m) {
+            x = new double[cap];
+            y = new double[cap];
+            id = new int[cap];
+            tx = new double[cap];
+            ty = new double[cap];
+            tid = new int[cap];
+            m.addAlloc(6L * cap);
+        }
+
+        void read(Records r, int cnt) throws IOException {
+            for (int i = 0; i < cnt; i++) {
+                x[i] = r.x(i);
+                y[i] = r.y(i);
+                id[i] = r.id(i);
+            }
+        }
+
+        // после вызова [0, cnt) отсортирован по y
+        void solve(int cnt, ClosestPair.Best best, Metrics m) {
+            ClosestPair.Engine e = new ClosestPair.Engine(x, y, id, tx, ty, tid);
+            e.sortByX(0, cnt, m);
+            if (cnt >= 2) e.solve(0, cnt, best, m);
+        }
+    }
+
+    // Чтение файла записей окнами MappedByteBuffer по MAP_WINDOW_POINTS записей. Записи по 16 байт -
+    // исходный файл, номер точки - её позиция; по 20 байт - (x, y, номер) из полос и переноса.
+    private static final class Records {
+        final long n;
+        private final FileChannel ch;
+        private final int rec;
+        private final Metrics m;
+        private MappedByteBuffer window;
+        private long start = -1, end = -1;
+
+        Records(FileChannel ch, long n, int rec, Metrics m) {
+            this.ch = ch;
+            this.n = n;
+            this.rec = rec;
+            this.m = m;
+        }
+
+        double x(long i) throws IOException {
+            return at(i).getDouble((int) ((i - start) * rec));
+        }
+
+        double y(long i) throws IOException {
+            return at(i).getDouble((int) ((i - start) * rec) + 8);
+        }
+
+        int id(long i) throws IOException {
+            return rec == POINT_BYTES ? (int) i : at(i).getInt((int) ((i - start) * rec) + 16);
+        }
+
+        private MappedByteBuffer at(long i) throws IOException {
+            if (i < start || i >= end) {
+                start = i;
+                end = Math.min(n, i + MAP_WINDOW_POINTS);
+                long len = (end - start) * rec;
+                window = ch.map(FileChannel.MapMode.READ_ONLY, start * rec, len);
+                window.order(ORDER);
+                m.addIo(len);
+            }
+            return window;
+        }
+    }
+
+    private static final class SlabWriter implements Closeable {
+        private final FileChannel ch;
+        private final ByteBuffer buf;
+        private final Metrics m;
+
+        SlabWriter(Path p, int bufBytes, Metrics m) throws IOException {
+            this.ch = FileChannel.open(p, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.buf = ByteBuffer.allocateDirect(bufBytes).order(ORDER);
+            this.m = m;
+        }
+
+        void write(double x, double y, int id) throws IOException {
+            if (!buf.hasRemaining()) flush();
+            buf.putDouble(x).putDouble(y).putInt(id);
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            m.addIo(buf.remaining());
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+        }
+
+        @Override public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                ch.close();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,153 @@
+package algo.pair;
+
+import algo.common.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalClosestPairTest {
+
+    private static void write(Path p, double[] xs, double[] ys) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(xs.length * ExternalClosestPair.POINT_BYTES).order(ExternalClosestPair.ORDER);
+        for (int i = 0; i < xs.length; i++) buf.putDouble(xs[i]).putDouble(ys[i]);
+        Files.write(p, buf.array());
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) Files.deleteIfExists(p);
+        }
+    }
+
+    private static void assertSame(double[] xs, double[] ys, ClosestPair.IndexResult got) {
+        assertEquals(ClosestPair.closest(xs, ys, null).dist(), got.dist(), 1e-12);
+        assertEquals(got.dist(), Math.hypot(xs[got.i()] - xs[got.j()], ys[got.i()] - ys[got.j()]), 1e-12);
+    }
+
+    @Test
+    void slabsMatchInMemory() throws IOException {
+        Path dir = Files.createTempDirectory("extpair");
+        try {
+            Random rnd = new Random(23);
+            for (int t = 0; t < 5; t++) {
+                int n = 30_000;
+                double[] xs = new double[n], ys = new double[n];
+                for (int i = 0; i < n; i++) {
+                    // немного равных x и узкие по x области, чтобы пары проходили через границы
+                    xs[i] = t % 2 == 0 ? rnd.nextDouble() * 1000 : rnd.nextInt(400) * 0.25;
+                    ys[i] = rnd.nextDouble() * 1000;
+                }
+                Path in = dir.resolve("pts" + t + ".bin");
+                write(in, xs, ys);
+                Metrics m = new Metrics();
+                assertSame(xs, ys, ExternalClosestPair.closest(in, 1000, dir, m));
+                // раскладка и обход; полоса, которой досталось больше chunkPoints, добавляет уровень
+                assertTrue(m.passes >= 2);
+                assertTrue(m.ioBytes >= 2L * n * ExternalClosestPair.POINT_BYTES);
+                try (Stream<Path> files = Files.list(dir)) {
+                    assertEquals(t + 1, files.count(), "temporary slabs left behind");
+                }
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    void verticalLineAndSingleChunk() throws IOException {
+        Path dir = Files.createTempDirectory("extpair");
+        try {
+            int n = 5000;
+            double[] xs = new double[n], ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = 1.5;
+                ys[i] = 7.0 * ((i * 31L) % n);
+            }
+            ys[4000] = ys[17] + 0.25;
+            Path in = dir.resolve("line.bin");
+            write(in, xs, ys);
+            ClosestPair.IndexResult r = ExternalClosestPair.closest(in, 200, null, null);
+            assertEquals(0.25, r.dist(), 1e-12);
+            assertEquals(17, r.i());
+            assertEquals(4000, r.j());
+            assertSame(xs, ys, ExternalClosestPair.closest(in, n, null, null));
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    // на одной вертикали все точки ближе delta к каждой границе: перенос идёт через диск,
+    // а в куче остаются полоса и выборка
+    @Test
+    void verticalLineKeepsHeapBounded() throws IOException {
+        Path dir = Files.createTempDirectory("extpair");
+        try {
+            int n = 100_000, chunk = 2000;
+            double[] xs = new double[n], ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = -3.0;
+                ys[i] = 5.0 * ((i * 7919L) % n);
+            }
+            ys[99_000] = ys[3] - 0.5;
+            Path in = dir.resolve("line.bin");
+            write(in, xs, ys);
+            Metrics m = new Metrics();
+            ClosestPair.IndexResult r = ExternalClosestPair.closest(in, chunk, dir, m);
+            assertEquals(0.5, r.dist(), 1e-12);
+            assertEquals(3, r.i());
+            assertEquals(99_000, r.j());
+            assertTrue(m.allocations < 20L * chunk, "allocations " + m.allocations);
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(1, files.count(), "temporary files left behind");
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    // полос больше MAX_FANOUT и выборка не больше chunkPoints: раскладка в несколько уровней
+    @Test
+    void smallChunkScattersInLevels() throws IOException {
+        Path dir = Files.createTempDirectory("extpair");
+        try {
+            Random rnd = new Random(29);
+            int n = 50_000;
+            double[] xs = new double[n], ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = rnd.nextInt(5000) * 0.5;
+                ys[i] = rnd.nextDouble() * 1000;
+            }
+            Path in = dir.resolve("pts.bin");
+            write(in, xs, ys);
+            Metrics m = new Metrics();
+            assertSame(xs, ys, ExternalClosestPair.closest(in, 64, dir, m));
+            assertTrue(m.passes >= 3, "passes " + m.passes);
+            assertTrue(m.allocations < 40L * n, "allocations " + m.allocations);
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(1, files.count(), "temporary files left behind");
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        Path dir = Files.createTempDirectory("extpair");
+        try {
+            Path in = dir.resolve("bad.bin");
+            Files.write(in, new byte[40]);
+            assertThrows(IllegalArgumentException.class, () -> ExternalClosestPair.closest(in, null));
+        } finally {
+            deleteAll(dir);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,256 @@
+package algo.sort;
+
+import algo.common.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Внешняя сортировка файла из int (4 байта, little-endian), который не помещается в кучу.
+// 1) Файл читается кусками через MappedByteBuffer, каждый кусок сортируется QuickSort на месте
+//    и сбрасывается на диск отдельной серией.
+// 2) Серии сливаются по fanIn штук за раз деревом проигравших, пока не останется одна.
+// Весь ввод-вывод последовательный, крупными буферами. В Metrics: ioBytes - байты чтения и записи,
+// passes - число проходов слияния.
+public final class ExternalSort {
+    public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final int DEFAULT_CHUNK_INTS = 1 << 24;
+    private static final int DEFAULT_FAN_IN = 64;
+    private static final int READ_BUFFER_BYTES = 1 << 18;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private ExternalSort() {}
+
+    public static void sort(Path in, Path out, Metrics m) throws IOException {
+        sort(in, out, DEFAULT_CHUNK_INTS, DEFAULT_FAN_IN, null, m);
+    }
+
+    // chunkInts - сколько int сортируется в памяти за раз; tmpDir == null - каталог выходного файла
+    public static void sort(Path in, Path out, int chunkInts, int fanIn, Path tmpDir, Metrics m) throws IOException {
+        if (in == null || out == null) throw new IllegalArgumentException("path is null");
+        if (chunkInts < 1 || chunkInts > Integer.MAX_VALUE / 4) throw new IllegalArgumentException("bad chunk size");
+        if (fanIn < 2) throw new IllegalArgumentException("fan-in must be >= 2");
+        if (m == null) m = Metrics.NOOP;
+        if (tmpDir == null) tmpDir = out.toAbsolutePath().getParent();
+        m.startTimer();
+
+        List<Path> temps = new ArrayList<>();
+        try {
+            List<Path> runs = formRuns(in, out, chunkInts, tmpDir, temps, m);
+            while (runs.size() > 1) {
+                boolean last = runs.size() <= fanIn;
+                List<Path> next = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += fanIn) {
+                    List<Path> group = runs.subList(i, Math.min(runs.size(), i + fanIn));
+                    Path target = last ? out : tempFile(tmpDir, temps);
+                    next.add(target);
+                    mergeRuns(group, target, m);
+                    for (Path p : group) Files.deleteIfExists(p);
+                }
+                runs = next;
+                m.onPass();
+            }
+        } finally {
+            for (Path p : temps) Files.deleteIfExists(p);
+        }
+        m.stopTimer();
+    }
+
+    private static Path tempFile(Path dir, List<Path> temps) throws IOException {
+        Path p = Files.createTempFile(dir, "run", ".bin");
+        temps.add(p);
+        return p;
+    }
+
+    // если кусок один, он сразу пишется в out и слияние не нужно
+    private static List<Path> formRuns(Path in, Path out, int chunkInts, Path tmpDir, List<Path> temps, Metrics m)
+            throws IOException {
+        List<Path> runs = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(in, StandardOpenOption.READ)) {
+            long bytes = ch.size();
+            if (bytes % 4 != 0) throw new IllegalArgumentException("file size is not a multiple of 4: " + bytes);
+            long total = bytes / 4;
+            if (total <= chunkInts) {
+                int[] chunk = readChunk(ch, 0, (int) total, m);
+                QuickSort.sortRange(chunk, 0, chunk.length, m);
+                writeRun(out, chunk, chunk.length, m);
+                return runs;
+            }
+            int[] chunk = new int[chunkInts];
+            m.addAlloc(chunkInts);
+            for (long pos = 0; pos < total; pos += chunkInts) {
+                int len = (int) Math.min(chunkInts, total - pos);
+                int[] run = len == chunkInts ? chunk : new int[len];
+                if (run != chunk) m.addAlloc(len);
+                map(ch, pos, len, m).get(run, 0, len);
+                QuickSort.sortRange(run, 0, len, m);
+                Path p = tempFile(tmpDir, temps);
+                runs.add(p);
+                writeRun(p, run, len, m);
+            }
+        }
+        return runs;
+    }
+
+    private static int[] readChunk(FileChannel ch, long pos, int len, Metrics m) throws IOException {
+        int[] chunk = new int[len];
+        m.addAlloc(len);
+        if (len > 0) map(ch, pos, len, m).get(chunk);
+        return chunk;
+    }
+
+    private static IntBuffer map(FileChannel ch, long pos, int len, Metrics m) throws IOException {
+        MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, pos * 4, (long) len * 4);
+        m.addIo((long) len * 4);
+        return mb.order(ORDER).asIntBuffer();
+    }
+
+    private static void writeRun(Path p, int[] a, int len, Metrics m) throws IOException {
+        try (RunWriter w = new RunWriter(p, m)) {
+            w.write(a, 0, len);
+        }
+    }
+
+    private static void mergeRuns(List<Path> group, Path target, Metrics m) throws IOException {
+        int k = group.size();
+        RunReader[] readers = new RunReader[k];
+        try (RunWriter w = new RunWriter(target, m)) {
+            for (int i = 0; i < k; i++) readers[i] = new RunReader(group.get(i), m);
+            LoserTree tree = new LoserTree(k, m);
+            for (int i = 0; i < k; i++) tree.keys[i] = readers[i].nextKey();
+            tree.build();
+            while (true) {
+                int src = tree.winner();
+                long key = tree.keys[src];
+                if (key == LoserTree.EXHAUSTED) break;
+                w.write((int) key);
+                tree.keys[src] = readers[src].nextKey();
+                tree.replay(src);
+            }
+        } finally {
+            for (RunReader r : readers) if (r != null) r.close();
+        }
+    }
+
+    // Дерево проигравших на k источников: во внутренних узлах - проигравшие, в tree[0] - победитель.
+    // После выдачи минимума переигрывается только путь от его листа к корню: log2(k) сравнений.
+    private static final class LoserTree {
+        static final long EXHAUSTED = Long.MAX_VALUE;
+        private final int k;
+        private final int[] tree;
+        final long[] keys;
+        private final Metrics m;
+
+        LoserTree(int k, Metrics m) {
+            this.k = k;
+            this.tree = new int[k];
+            this.keys = new long[k + 1];
+            this.m = m;
+        }
+
+        void build() {
+            // фиктивный лист k с ключом -inf занимает все узлы, реальные листья вытесняют его
+            keys[k] = Long.MIN_VALUE;
+            Arrays.fill(tree, k);
+            for (int i = k - 1; i >= 0; i--) replay(i);
+        }
+
+        int winner() { return tree[0]; }
+
+        void replay(int s) {
+            for (int t = (s + k) >> 1; t > 0; t >>= 1) {
+                m.onCompare();
+                if (keys[s] > keys[tree[t]]) {
+                    int loser = s;
+                    s = tree[t];
+                    tree[t] = loser;
+                }
+            }
+            tree[0] = s;
+        }
+    }
+
+    private static final class RunReader implements Closeable {
+        private final FileChannel ch;
+        private final ByteBuffer buf;
+        private final Metrics m;
+
+        RunReader(Path p, Metrics m) throws IOException {
+            this.ch = FileChannel.open(p, StandardOpenOption.READ);
+            this.buf = ByteBuffer.allocateDirect(READ_BUFFER_BYTES).order(ORDER);
+            this.buf.limit(0);
+            this.m = m;
+        }
+
+        long nextKey() throws IOException {
+            if (!buf.hasRemaining() && !refill()) return LoserTree.EXHAUSTED;
+            return buf.getInt();
+        }
+
+        private boolean refill() throws IOException {
+            buf.clear();
+            while (buf.hasRemaining()) {
+                if (ch.read(buf) < 0) break;
+            }
+            buf.flip();
+            m.addIo(buf.remaining());
+            return buf.hasRemaining();
+        }
+
+        @Override public void close() throws IOException { ch.close(); }
+    }
+
+    private static final class RunWriter implements Closeable {
+        private final FileChannel ch;
+        private final ByteBuffer buf;
+        private final Metrics m;
+
+        RunWriter(Path p, Metrics m) throws IOException {
+            this.ch = FileChannel.open(p, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buf = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ORDER);
+            this.m = m;
+        }
+
+        void write(int x) throws IOException {
+            if (!buf.hasRemaining()) flush();
+            buf.putInt(x);
+        }
+
+        void write(int[] a, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buf.hasRemaining()) flush();
+                int n = Math.min(len, buf.remaining() / 4);
+                buf.asIntBuffer().put(a, off, n);
+                buf.position(buf.position() + 4 * n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            m.addIo(buf.remaining());
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+        }
+
+        @Override public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                ch.close();
+            }
+        }
+    }
+}
\ No newline at end of file
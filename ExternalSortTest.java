@@ -0,0 +1,117 @@
+package algo.sort;
+
+import algo.common.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalSortTest {
+
+    private static void write(Path p, int[] a) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(a.length * 4).order(ExternalSort.ORDER);
+        buf.asIntBuffer().put(a);
+        Files.write(p, buf.array());
+    }
+
+    private static int[] read(Path p) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(p)).order(ExternalSort.ORDER);
+        int[] a = new int[buf.remaining() / 4];
+        buf.asIntBuffer().get(a);
+        return a;
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) Files.deleteIfExists(p);
+        }
+    }
+
+    @Test
+    void multiPassMerge() throws IOException {
+        Path dir = Files.createTempDirectory("extsort");
+        try {
+            int[] a = new Random(41).ints(100_003).toArray();
+            Path in = dir.resolve("in.bin"), out = dir.resolve("out.bin");
+            write(in, a);
+            Metrics m = new Metrics();
+            // 101 серия при fanIn 4 - четыре прохода слияния
+            ExternalSort.sort(in, out, 1000, 4, dir, m);
+            Arrays.sort(a);
+            assertArrayEquals(a, read(out));
+            assertEquals(4, m.passes);
+            assertTrue(m.ioBytes >= 2L * 4 * a.length * (m.passes + 1), "io=" + m.ioBytes);
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(2, files.count(), "temporary runs left behind");
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    void singleChunkAndEmpty() throws IOException {
+        Path dir = Files.createTempDirectory("extsort");
+        try {
+            Path in = dir.resolve("in.bin"), out = dir.resolve("out.bin");
+            int[] a = new Random(42).ints(5000, -10, 10).toArray();
+            write(in, a);
+            Metrics m = new Metrics();
+            ExternalSort.sort(in, out, 1 << 20, 64, null, m);
+            Arrays.sort(a);
+            assertArrayEquals(a, read(out));
+            assertEquals(0, m.passes);
+
+            write(in, new int[0]);
+            ExternalSort.sort(in, out, 10, 2, null, null);
+            assertEquals(0, read(out).length);
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    // куски сортируются без своего таймера: elapsedNanos - вся сортировка, а не хвост после последнего куска
+    @Test
+    void timerCoversWholeSort() throws IOException {
+        Path dir = Files.createTempDirectory("extsort");
+        try {
+            Path in = dir.resolve("in.bin"), out = dir.resolve("out.bin");
+            write(in, new Random(43).ints(20_000).toArray());
+            int[] starts = new int[1];
+            Metrics m = new Metrics() {
+                @Override public void startTimer() {
+                    starts[0]++;
+                    super.startTimer();
+                }
+            };
+            long t0 = System.nanoTime();
+            ExternalSort.sort(in, out, 1000, 4, dir, m);
+            long wall = System.nanoTime() - t0;
+            assertEquals(1, starts[0]);
+            assertTrue(m.elapsedNanos > 0 && m.elapsedNanos <= wall, "elapsed=" + m.elapsedNanos + " wall=" + wall);
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        Path dir = Files.createTempDirectory("extsort");
+        try {
+            Path in = dir.resolve("in.bin");
+            Files.write(in, new byte[7]);
+            assertThrows(IllegalArgumentException.class,
+                    () -> ExternalSort.sort(in, dir.resolve("out.bin"), 10, 2, null, null));
+        } finally {
+            deleteAll(dir);
+        }
+    }
+}
\ No newline at end of file
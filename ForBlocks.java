@@ -0,0 +1,28 @@
+package algo.common;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// Параллельный цикл по блокам [b0, b1): диапазон делится пополам, пока не останется один блок.
+// Общий для RadixSort и DeterministicSelect
+public final class ForBlocks extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int b0, b1;
+    private final IntConsumer body;
+
+    public ForBlocks(int b0, int b1, IntConsumer body) {
+        if (b0 >= b1) throw new IllegalArgumentException("empty block range");
+        if (body == null) throw new IllegalArgumentException("body is null");
+        this.b0 = b0; this.b1 = b1; this.body = body;
+    }
+
+    @Override protected void compute() {
+        if (b1 - b0 == 1) {
+            body.accept(b0);
+            return;
+        }
+        int mid = (b0 + b1) >>> 1;
+        invokeAll(new ForBlocks(b0, mid, body), new ForBlocks(mid, b1, body));
+    }
+}
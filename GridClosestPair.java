@@ -0,0 +1,232 @@
+package algo.pair;
+
+import algo.common.Metrics;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Ближайшая пара через рандомизированную инкрементальную сетку (Rabin, Khuller-Matias).
+ * Точки перемешиваются и добавляются по одной в сетку с ячейкой delta - текущим лучшим
+ * расстоянием; новой точке достаточно проверить 3x3 соседних ячеек. Если delta уменьшилось,
+ * сетка перестраивается по уже добавленным точкам. После перемешивания i-я точка улучшает
+ * ответ с вероятностью не больше 2/i, поэтому ожидаемое время O(n) без всякой сортировки.
+ */
+public final class GridClosestPair {
+
+    private GridClosestPair() {}
+
+    public static ClosestPair.Result closest(Point2D[] pts, Metrics m) {
+        if (pts == null || pts.length < 2) throw new IllegalArgumentException("need >= 2 points");
+        int n = pts.length;
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = pts[i].x();
+            ys[i] = pts[i].y();
+        }
+        if (m != null) m.addAlloc(2L * n);
+        ClosestPair.IndexResult r = closest(xs, ys, m);
+        return new ClosestPair.Result(pts[r.i()], pts[r.j()], r.dist());
+    }
+
+    public static ClosestPair.IndexResult closest(double[] xs, double[] ys, Metrics m) {
+        return closest(xs, ys, new SplittableRandom().nextLong(), m);
+    }
+
+    // seed задаёт порядок вставки: ответ от него не зависит, только время работы
+    public static ClosestPair.IndexResult closest(double[] xs, double[] ys, long seed, Metrics m) {
+        if (xs == null || ys == null) throw new IllegalArgumentException("coordinates are null");
+        if (xs.length != ys.length) throw new IllegalArgumentException("xs and ys differ in length");
+        if (xs.length < 2) throw new IllegalArgumentException("need >= 2 points");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        ClosestPair.IndexResult r = closest(xs, ys, xs.length, seed, m);
+        m.stopTimer();
+        return r;
+    }
+
+    // по первым n точкам, без таймера; n >= 2
+    static ClosestPair.IndexResult closest(double[] xs, double[] ys, int n, long seed, Metrics m) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = order[i]; order[i] = order[j]; order[j] = t;
+        }
+        m.addAlloc(n);
+
+        int bi = order[0], bj = order[1];
+        double best = dist2(xs, ys, bi, bj, m);
+        Grid grid = new Grid(n, m);
+        grid.rebuild(xs, ys, order, 2, Math.sqrt(best));
+        for (int t = 2; t < n && best > 0; t++) {
+            int p = order[t];
+            double x = xs[p], y = ys[p];
+            long cx = grid.cell(x), cy = grid.cell(y);
+            int found = -1;
+            double d = best;
+            for (long gx = cx - 1; gx <= cx + 1; gx++) {
+                for (long gy = cy - 1; gy <= cy + 1; gy++) {
+                    for (int q = grid.head(gx, gy); q >= 0; q = grid.next[q]) {
+                        double dq = dist2(xs, ys, p, q, m);
+                        if (dq < d) {
+                            d = dq;
+                            found = q;
+                        }
+                    }
+                }
+            }
+            if (found >= 0) {
+                best = d;
+                bi = p;
+                bj = found;
+                grid.rebuild(xs, ys, order, t + 1, Math.sqrt(best));
+            } else {
+                grid.insert(p, cx, cy);
+            }
+        }
+        return new ClosestPair.IndexResult(Math.min(bi, bj), Math.max(bi, bj), Math.sqrt(best));
+    }
+
+    private static double dist2(double[] xs, double[] ys, int i, int j, Metrics m) {
+        m.onCompare();
+        double dx = xs[i] - xs[j], dy = ys[i] - ys[j];
+        return dx * dx + dy * dy;
+    }
+
+    // Ячейки (cx, cy) -> голова списка точек ячейки, открытая адресация без объектов;
+    // списки связаны через next[] по номеру точки. Опустевшая ячейка остаётся в таблице
+    // с головой REMOVED, чтобы не рвать цепочки проб; такие ячейки выкидываются при rehash.
+    static final class Grid {
+        private static final int EMPTY = -1, REMOVED = -2;
+        private final Metrics m;
+        int[] next;
+        private long[] kx, ky;
+        private int[] heads;
+        private int mask, used;
+        private double size;
+
+        Grid(int n, Metrics m) {
+            this.m = m;
+            next = new int[n];
+            allocate(16);
+        }
+
+        long cell(double v) {
+            return (long) Math.floor(v / size);
+        }
+
+        double cellSize() {
+            return size;
+        }
+
+        void ensurePoints(int n) {
+            if (n > next.length) {
+                next = Arrays.copyOf(next, Math.max(n, 2 * next.length));
+                m.addAlloc(next.length);
+            }
+        }
+
+        // пустая сетка с ячейкой size и точками 0..count-1
+        void rebuild(double[] xs, double[] ys, int count, double size) {
+            reset(count, size);
+            for (int p = 0; p < count; p++) insert(p, cell(xs[p]), cell(ys[p]));
+            m.onPass();
+        }
+
+        // пустая сетка с ячейкой size и точками order[0, count)
+        void rebuild(double[] xs, double[] ys, int[] order, int count, double size) {
+            reset(count, size);
+            for (int t = 0; t < count; t++) {
+                int p = order[t];
+                insert(p, cell(xs[p]), cell(ys[p]));
+            }
+            m.onPass();
+        }
+
+        private void reset(int count, double size) {
+            this.size = size;
+            if (2 * count > heads.length) allocate(Integer.highestOneBit(4 * count - 1));
+            else Arrays.fill(heads, EMPTY);
+            used = 0;
+        }
+
+        int head(long cx, long cy) {
+            int i = find(cx, cy);
+            return heads[i] < 0 ? EMPTY : heads[i];
+        }
+
+        void insert(int p, long cx, long cy) {
+            if (2 * (used + 1) > heads.length) rehash();
+            int i = find(cx, cy);
+            if (heads[i] == EMPTY) {
+                kx[i] = cx;
+                ky[i] = cy;
+                used++;
+            }
+            next[p] = heads[i] < 0 ? EMPTY : heads[i];
+            heads[i] = p;
+        }
+
+        // убирает точку p из списка ячейки (cx, cy); false, если её там нет
+        boolean remove(int p, long cx, long cy) {
+            int i = find(cx, cy);
+            if (heads[i] < 0) return false;
+            if (heads[i] == p) {
+                heads[i] = next[p] < 0 ? REMOVED : next[p];
+                return true;
+            }
+            for (int q = heads[i]; next[q] >= 0; q = next[q]) {
+                if (next[q] == p) {
+                    next[q] = next[p];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // слот ячейки или первый пустой слот цепочки
+        private int find(long cx, long cy) {
+            for (int i = slot(cx, cy); ; i = (i + 1) & mask) {
+                if (heads[i] == EMPTY || (kx[i] == cx && ky[i] == cy)) return i;
+            }
+        }
+
+        private int slot(long cx, long cy) {
+            long h = cx * 0x9E3779B97F4A7C15L + cy;
+            h ^= h >>> 29;
+            h *= 0xBF58476D1CE4E5B9L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private void allocate(int capacity) {
+            kx = new long[capacity];
+            ky = new long[capacity];
+            heads = new int[capacity];
+            Arrays.fill(heads, EMPTY);
+            mask = capacity - 1;
+            m.addAlloc(5L * capacity);
+        }
+
+        // списки точек остаются как были, переносятся только непустые ячейки;
+        // если место заняли в основном опустевшие, таблица не растёт
+        private void rehash() {
+            long[] ox = kx, oy = ky;
+            int[] oh = heads;
+            int live = 0;
+            for (int h : oh) if (h >= 0) live++;
+            allocate(4 * (live + 1) > oh.length ? 2 * oh.length : oh.length);
+            used = 0;
+            for (int s = 0; s < oh.length; s++) {
+                if (oh[s] < 0) continue;
+                int i = slot(ox[s], oy[s]);
+                while (heads[i] != EMPTY) i = (i + 1) & mask;
+                used++;
+                kx[i] = ox[s];
+                ky[i] = oy[s];
+                heads[i] = oh[s];
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package algo.pair;
+
+import algo.common.Inputs;
+import algo.common.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GridClosestPairTest {
+
+    @Test
+    void matchesDivideAndConquer() {
+        Random rnd = new Random(21);
+        for (Inputs.PointDistribution d : Inputs.PointDistribution.values()) {
+            for (int n : new int[]{2, 3, 50, 1000, 100_000}) {
+                Point2D[] pts = Inputs.points(d, n, rnd.nextLong());
+                double want = ClosestPair.closest(pts, null).dist;
+                ClosestPair.Result got = GridClosestPair.closest(pts, new Metrics());
+                assertEquals(want, got.dist, 1e-9, d + " n=" + n);
+                assertEquals(got.dist, Math.hypot(got.a.x() - got.b.x(), got.a.y() - got.b.y()), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void linearWorkOnUniform() {
+        int n = 200_000;
+        double[] xs = new double[n], ys = new double[n];
+        Random rnd = new Random(8);
+        for (int i = 0; i < n; i++) {
+            xs[i] = rnd.nextDouble() * 1000;
+            ys[i] = rnd.nextDouble() * 1000;
+        }
+        Metrics m = new Metrics();
+        ClosestPair.IndexResult r = GridClosestPair.closest(xs, ys, 1, m);
+        assertEquals(ClosestPair.closest(xs, ys, null).dist(), r.dist(), 1e-12);
+        assertTrue(m.comparisons < 20L * n, "comparisons=" + m.comparisons);
+    }
+
+    @Test
+    void duplicatesAndEqualX() {
+        double[] xs = {3, 3, 3, 3, 7};
+        double[] ys = {0, 10, 20, 10, 5};
+        ClosestPair.IndexResult r = GridClosestPair.closest(xs, ys, 5, null);
+        assertEquals(0.0, r.dist());
+        assertEquals(1, r.i());
+        assertEquals(3, r.j());
+    }
+}
\ No newline at end of file
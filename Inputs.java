@@ -0,0 +1,72 @@
+package algo.common;
+
+import algo.pair.Point2D;
+
+import java.util.Random;
+
+// Генераторы входных данных для бенчмарков и экспериментов; одинаковый seed - одинаковый вход.
+public final class Inputs {
+    public enum Distribution { RANDOM, SORTED, REVERSED, MANY_DUPLICATES, SAWTOOTH }
+    public enum PointDistribution { UNIFORM, CLUSTERED }
+
+    private static final int BOUND = 1_000_000;
+    private static final int DISTINCT = 100;
+    private static final int SAW_TEETH = 16;
+    private static final int CLUSTERS = 20;
+
+    private Inputs() {}
+
+    public static int[] ints(Distribution d, int n, long seed) {
+        Random rnd = new Random(seed);
+        int[] a = new int[n];
+        switch (d) {
+            case RANDOM -> {
+                for (int i = 0; i < n; i++) a[i] = rnd.nextInt(2 * BOUND) - BOUND;
+            }
+            case SORTED -> {
+                for (int i = 0; i < n; i++) a[i] = i;
+            }
+            case REVERSED -> {
+                for (int i = 0; i < n; i++) a[i] = n - i;
+            }
+            case MANY_DUPLICATES -> {
+                for (int i = 0; i < n; i++) a[i] = rnd.nextInt(DISTINCT);
+            }
+            case SAWTOOTH -> {
+                int tooth = Math.max(1, n / SAW_TEETH);
+                for (int i = 0; i < n; i++) a[i] = i % tooth;
+            }
+        }
+        return a;
+    }
+
+    public static Point2D[] points(PointDistribution d, int n, long seed) {
+        Random rnd = new Random(seed);
+        Point2D[] pts = new Point2D[n];
+        switch (d) {
+            case UNIFORM -> {
+                for (int i = 0; i < n; i++) pts[i] = new Point2D(rnd.nextDouble() * 1000, rnd.nextDouble() * 1000);
+            }
+            case CLUSTERED -> {
+                double[] cx = new double[CLUSTERS], cy = new double[CLUSTERS];
+                for (int c = 0; c < CLUSTERS; c++) {
+                    cx[c] = rnd.nextDouble() * 1000;
+                    cy[c] = rnd.nextDouble() * 1000;
+                }
+                for (int i = 0; i < n; i++) {
+                    int c = rnd.nextInt(CLUSTERS);
+                    pts[i] = new Point2D(cx[c] + rnd.nextGaussian() * 5, cy[c] + rnd.nextGaussian() * 5);
+                }
+            }
+        }
+        return pts;
+    }
+
+    public static Distribution distribution(String name) {
+        return Distribution.valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+    public static PointDistribution pointDistribution(String name) {
+        return PointDistribution.valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,442 @@
+package algo.pair;
+
+import algo.common.Metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Статическое 2-d дерево без объектов-узлов. Точки переставлены в массивах x/y/id так,
+ * что отрезок [lo, hi) - поддерево, его корень - медиана в позиции mid = (lo + hi) / 2,
+ * слева не больше по оси axis[mid], справа не меньше. Медиана ставится на место
+ * quickselect-ом по координате, как в DeterministicSelect, ось - та, где разброс больше.
+ * Отрезки до LEAF точек не делятся и просматриваются целиком.
+ * Запросы не меняют дерево, поэтому их можно выполнять из нескольких потоков.
+ */
+public final class KdTree {
+    private static final int LEAF = 8;
+    private static final int SELECT_CUTOFF = 16;
+    private static final int PARALLEL_CUTOFF = 1 << 13;
+    private static final int QUERY_BLOCK = 1 << 10;
+
+    private final double[] x, y;
+    private final int[] id;
+    private final byte[] axis;
+
+    private KdTree(double[] xs, double[] ys, Metrics m) {
+        int n = xs.length;
+        x = Arrays.copyOf(xs, n);
+        y = Arrays.copyOf(ys, n);
+        id = new int[n];
+        for (int i = 0; i < n; i++) id[i] = i;
+        axis = new byte[n];
+        m.addAlloc(3L * n + n / 8);
+    }
+
+    // координаты пишутся сразу в массивы дерева, без промежуточных xs/ys
+    private KdTree(Point2D[] pts, Metrics m) {
+        int n = pts.length;
+        x = new double[n];
+        y = new double[n];
+        id = new int[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = pts[i].x();
+            y[i] = pts[i].y();
+            id[i] = i;
+        }
+        axis = new byte[n];
+        m.addAlloc(3L * n + n / 8);
+    }
+
+    public static KdTree build(Point2D[] pts, Metrics m) {
+        if (pts == null) throw new IllegalArgumentException("points are null");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        KdTree t = new KdTree(pts, m);
+        t.build(0, pts.length, m);
+        m.stopTimer();
+        return t;
+    }
+
+    public static KdTree build(double[] xs, double[] ys, Metrics m) {
+        check(xs, ys);
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        KdTree t = new KdTree(xs, ys, m);
+        t.build(0, xs.length, m);
+        m.stopTimer();
+        return t;
+    }
+
+    // поддеревья выше PARALLEL_CUTOFF строятся параллельными задачами
+    public static KdTree parallelBuild(double[] xs, double[] ys, Metrics m, ForkJoinPool pool) {
+        check(xs, ys);
+        if (pool == null) throw new IllegalArgumentException("pool is null");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        KdTree t = new KdTree(xs, ys, m);
+        BuildTask root = new BuildTask(t, 0, xs.length, m.fork());
+        pool.invoke(root);
+        m.merge(root.m);
+        m.stopTimer();
+        return t;
+    }
+
+    private static void check(double[] xs, double[] ys) {
+        if (xs == null || ys == null) throw new IllegalArgumentException("coordinates are null");
+        if (xs.length != ys.length) throw new IllegalArgumentException("xs and ys differ in length");
+    }
+
+    public int size() { return x.length; }
+
+    /** Индекс ближайшей к (qx, qy) точки. */
+    public int nearest(double qx, double qy, Metrics m) {
+        return kNearest(qx, qy, 1, m)[0];
+    }
+
+    /** Индексы k ближайших к (qx, qy) точек по возрастанию расстояния. */
+    public int[] kNearest(double qx, double qy, int k, Metrics m) {
+        checkK(k);
+        if (m == null) m = Metrics.NOOP;
+        Heap h = new Heap(k);
+        search(0, x.length, qx, qy, -1, h, m);
+        int[] res = new int[k];
+        h.drainIds(res, 0);
+        return res;
+    }
+
+    /** Пачка запросов: строка i результата (k элементов) - соседи точки (qx[i], qy[i]). */
+    public int[] kNearest(double[] qx, double[] qy, int k, Metrics m) {
+        check(qx, qy);
+        checkK(k);
+        if (m == null) m = Metrics.NOOP;
+        int[] res = new int[qx.length * k];
+        m.addAlloc(res.length);
+        queryBlock(qx, qy, k, 0, qx.length, res, new Heap(k), m);
+        return res;
+    }
+
+    public int[] parallelKNearest(double[] qx, double[] qy, int k, Metrics m, ForkJoinPool pool) {
+        check(qx, qy);
+        checkK(k);
+        if (pool == null) throw new IllegalArgumentException("pool is null");
+        if (m == null) m = Metrics.NOOP;
+        int[] res = new int[qx.length * k];
+        m.addAlloc(res.length);
+        QueryTask root = new QueryTask(this, qx, qy, k, 0, qx.length, res, m.fork());
+        pool.invoke(root);
+        m.merge(root.m);
+        return res;
+    }
+
+    /** Индексы точек на расстоянии не больше r от (qx, qy), в произвольном порядке. */
+    public int[] withinRadius(double qx, double qy, double r, Metrics m) {
+        if (!(r >= 0)) throw new IllegalArgumentException("radius must be >= 0");
+        if (m == null) m = Metrics.NOOP;
+        IntBuf out = new IntBuf();
+        radius(0, x.length, qx, qy, r * r, out, m);
+        return Arrays.copyOf(out.a, out.n);
+    }
+
+    /** Для каждой точки - индекс ближайшей к ней другой точки. */
+    public int[] allNearest(Metrics m) {
+        if (x.length < 2) throw new IllegalArgumentException("need >= 2 points");
+        if (m == null) m = Metrics.NOOP;
+        int[] res = new int[x.length];
+        m.addAlloc(res.length);
+        Heap h = new Heap(1);
+        for (int p = 0; p < x.length; p++) {
+            h.clear();
+            search(0, x.length, x[p], y[p], p, h, m);
+            res[id[p]] = (int) h.v[0];
+        }
+        return res;
+    }
+
+    /**
+     * k ближайших пар по возрастанию расстояния. Пара (i, j), i < j, рассматривается
+     * только из точки i, поиск общий с границей - текущим k-м лучшим расстоянием.
+     */
+    public ClosestPair.IndexResult[] kClosestPairs(int k, Metrics m) {
+        long pairs = (long) x.length * (x.length - 1) / 2;
+        if (k < 1 || k > pairs) throw new IllegalArgumentException("k out of range");
+        if (m == null) m = Metrics.NOOP;
+        Heap h = new Heap(k);
+        for (int p = 0; p < x.length; p++) pairSearch(0, x.length, p, h, m);
+        ClosestPair.IndexResult[] res = new ClosestPair.IndexResult[k];
+        for (int i = k - 1; i >= 0; i--) {
+            long v = h.v[0];
+            res[i] = new ClosestPair.IndexResult((int) (v >>> 32), (int) v, Math.sqrt(h.d[0]));
+            h.pop();
+        }
+        return res;
+    }
+
+    private void checkK(int k) {
+        if (k < 1 || k > x.length) throw new IllegalArgumentException("k out of range");
+    }
+
+    private void queryBlock(double[] qx, double[] qy, int k, int from, int to, int[] res, Heap h, Metrics m) {
+        for (int q = from; q < to; q++) {
+            h.clear();
+            search(0, x.length, qx[q], qy[q], -1, h, m);
+            h.drainIds(res, q * k);
+        }
+    }
+
+    private void build(int lo, int hi, Metrics m) {
+        m.onEnter(hi - lo);
+        while (hi - lo > LEAF) {
+            int mid = split(lo, hi, m);
+            build(lo, mid, m);
+            lo = mid + 1;
+        }
+        m.onExit();
+    }
+
+    // выбирает ось, ставит медиану в mid и возвращает mid
+    private int split(int lo, int hi, Metrics m) {
+        double minX = x[lo], maxX = minX, minY = y[lo], maxY = minY;
+        for (int i = lo + 1; i < hi; i++) {
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        int mid = (lo + hi) >>> 1;
+        byte a = (byte) (maxY - minY > maxX - minX ? 1 : 0);
+        select(a == 0 ? x : y, a == 0 ? y : x, lo, hi, mid, m);
+        axis[mid] = a;
+        return mid;
+    }
+
+    // Quickselect по key (other и id переставляются вместе): после него key[k] на месте,
+    // слева не больше, справа не меньше. Опорный - медиана трёх, Хоар с равными по обе стороны.
+    private void select(double[] key, double[] other, int lo, int hi, int k, Metrics m) {
+        while (hi - lo > SELECT_CUTOFF) {
+            double a = key[lo], b = key[(lo + hi) >>> 1], c = key[hi - 1];
+            double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+            int i = lo, j = hi - 1;
+            while (i <= j) {
+                while (key[i] < pivot) { i++; m.onCompare(); }
+                while (key[j] > pivot) { j--; m.onCompare(); }
+                m.onCompare();
+                if (i <= j) swap(key, other, i++, j--, m);
+            }
+            if (k <= j) hi = j + 1;
+            else if (k >= i) lo = i;
+            else return;
+        }
+        for (int i = lo + 1; i < hi; i++) {
+            for (int j = i; j > lo; j--) {
+                m.onCompare();
+                if (key[j - 1] <= key[j]) break;
+                swap(key, other, j - 1, j, m);
+            }
+        }
+    }
+
+    private void swap(double[] key, double[] other, int i, int j, Metrics m) {
+        double t = key[i]; key[i] = key[j]; key[j] = t;
+        t = other[i]; other[i] = other[j]; other[j] = t;
+        int p = id[i]; id[i] = id[j]; id[j] = p;
+        m.onSwap();
+    }
+
+    // k ближайших в куче h; позиция skip (точка-запрос из самого дерева) пропускается
+    private void search(int lo, int hi, double qx, double qy, int skip, Heap h, Metrics m) {
+        while (hi - lo > LEAF) {
+            int mid = (lo + hi) >>> 1;
+            if (mid != skip) h.offer(dist2(mid, qx, qy, m), id[mid]);
+            double diff = axis[mid] == 0 ? qx - x[mid] : qy - y[mid];
+            // сначала сторона запроса, потом дальняя - если до неё ближе текущей границы
+            if (diff < 0) {
+                search(lo, mid, qx, qy, skip, h, m);
+                if (diff * diff >= h.bound()) return;
+                lo = mid + 1;
+            } else {
+                search(mid + 1, hi, qx, qy, skip, h, m);
+                if (diff * diff >= h.bound()) return;
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < hi; i++) {
+            if (i != skip) h.offer(dist2(i, qx, qy, m), id[i]);
+        }
+    }
+
+    // пары (id[p], id[q]) с id[q] > id[p], общая куча на k лучших пар
+    private void pairSearch(int lo, int hi, int p, Heap h, Metrics m) {
+        double qx = x[p], qy = y[p];
+        int self = id[p];
+        while (hi - lo > LEAF) {
+            int mid = (lo + hi) >>> 1;
+            if (id[mid] > self) h.offer(dist2(mid, qx, qy, m), ((long) self << 32) | id[mid]);
+            double diff = axis[mid] == 0 ? qx - x[mid] : qy - y[mid];
+            if (diff < 0) {
+                pairSearch(lo, mid, p, h, m);
+                if (diff * diff >= h.bound()) return;
+                lo = mid + 1;
+            } else {
+                pairSearch(mid + 1, hi, p, h, m);
+                if (diff * diff >= h.bound()) return;
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < hi; i++) {
+            if (id[i] > self) h.offer(dist2(i, qx, qy, m), ((long) self << 32) | id[i]);
+        }
+    }
+
+    private void radius(int lo, int hi, double qx, double qy, double r2, IntBuf out, Metrics m) {
+        while (hi - lo > LEAF) {
+            int mid = (lo + hi) >>> 1;
+            if (dist2(mid, qx, qy, m) <= r2) out.add(id[mid]);
+            double diff = axis[mid] == 0 ? qx - x[mid] : qy - y[mid];
+            boolean far = diff * diff <= r2;
+            if (diff < 0) {
+                if (far) radius(mid + 1, hi, qx, qy, r2, out, m);
+                hi = mid;
+            } else {
+                if (far) radius(lo, mid, qx, qy, r2, out, m);
+                lo = mid + 1;
+            }
+        }
+        for (int i = lo; i < hi; i++) {
+            if (dist2(i, qx, qy, m) <= r2) out.add(id[i]);
+        }
+    }
+
+    private double dist2(int i, double qx, double qy, Metrics m) {
+        m.onCompare();
+        double dx = x[i] - qx, dy = y[i] - qy;
+        return dx * dx + dy * dy;
+    }
+
+    // Max-куча на cap лучших: расстояние + полезная нагрузка (индекс или пара индексов).
+    private static final class Heap {
+        final double[] d;
+        final long[] v;
+        int size;
+
+        Heap(int cap) {
+            d = new double[cap];
+            v = new long[cap];
+        }
+
+        void clear() { size = 0; }
+
+        // пока куча не полна, граница бесконечна
+        double bound() {
+            return size < d.length ? Double.POSITIVE_INFINITY : d[0];
+        }
+
+        void offer(double dist, long val) {
+            if (size < d.length) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (d[parent] >= dist) break;
+                    d[i] = d[parent];
+                    v[i] = v[parent];
+                    i = parent;
+                }
+                d[i] = dist;
+                v[i] = val;
+            } else if (dist < d[0]) {
+                siftDown(dist, val);
+            }
+        }
+
+        void pop() {
+            size--;
+            if (size > 0) siftDown(d[size], v[size]);
+        }
+
+        private void siftDown(double dist, long val) {
+            int i = 0, half = size >>> 1;
+            while (i < half) {
+                int c = 2 * i + 1;
+                if (c + 1 < size && d[c + 1] > d[c]) c++;
+                if (dist >= d[c]) break;
+                d[i] = d[c];
+                v[i] = v[c];
+                i = c;
+            }
+            d[i] = dist;
+            v[i] = val;
+        }
+
+        // индексы по возрастанию расстояния в out[from, from + size); куча опустошается
+        void drainIds(int[] out, int from) {
+            for (int i = size - 1; i >= 0; i--) {
+                out[from + i] = (int) v[0];
+                pop();
+            }
+        }
+    }
+
+    private static final class IntBuf {
+        int[] a = new int[16];
+        int n;
+
+        void add(int v) {
+            if (n == a.length) a = Arrays.copyOf(a, 2 * n);
+            a[n++] = v;
+        }
+    }
+
+    private static final class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final KdTree t;
+        final int lo, hi;
+        final Metrics m;
+
+        BuildTask(KdTree t, int lo, int hi, Metrics m) {
+            this.t = t; this.lo = lo; this.hi = hi; this.m = m;
+        }
+
+        @Override protected void compute() {
+            if (hi - lo <= PARALLEL_CUTOFF) {
+                t.build(lo, hi, m);
+                return;
+            }
+            int mid = t.split(lo, hi, m);
+            BuildTask left = new BuildTask(t, lo, mid, m.fork());
+            BuildTask right = new BuildTask(t, mid + 1, hi, m.fork());
+            invokeAll(left, right);
+            m.merge(left.m);
+            m.merge(right.m);
+        }
+    }
+
+    private static final class QueryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final KdTree t;
+        final double[] qx, qy;
+        final int k, from, to;
+        final int[] res;
+        final Metrics m;
+
+        QueryTask(KdTree t, double[] qx, double[] qy, int k, int from, int to, int[] res, Metrics m) {
+            this.t = t; this.qx = qx; this.qy = qy; this.k = k;
+            this.from = from; this.to = to; this.res = res; this.m = m;
+        }
+
+        @Override protected void compute() {
+            if (to - from <= QUERY_BLOCK) {
+                t.queryBlock(qx, qy, k, from, to, res, new Heap(k), m);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            QueryTask left = new QueryTask(t, qx, qy, k, from, mid, res, m.fork());
+            QueryTask right = new QueryTask(t, qx, qy, k, mid, to, res, m.fork());
+            invokeAll(left, right);
+            m.merge(left.m);
+            m.merge(right.m);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package algo.pair;
+
+import algo.common.Inputs;
+import algo.common.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KdTreeTest {
+
+    private static double d2(double[] xs, double[] ys, int i, double qx, double qy) {
+        double dx = xs[i] - qx, dy = ys[i] - qy;
+        return dx * dx + dy * dy;
+    }
+
+    // расстояния до k ближайших перебором, по возрастанию
+    private static double[] bruteK(double[] xs, double[] ys, double qx, double qy, int k) {
+        double[] d = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) d[i] = d2(xs, ys, i, qx, qy);
+        Arrays.sort(d);
+        return Arrays.copyOf(d, k);
+    }
+
+    private static double[][] coords(Inputs.PointDistribution dist, int n, long seed) {
+        Point2D[] pts = Inputs.points(dist, n, seed);
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = pts[i].x();
+            ys[i] = pts[i].y();
+        }
+        return new double[][]{xs, ys};
+    }
+
+    // сборка из Point2D пишет координаты прямо в дерево: то же дерево и те же выделения
+    @Test
+    void buildFromPointsMatchesArrays() {
+        Point2D[] pts = Inputs.points(Inputs.PointDistribution.UNIFORM, 5000, 21);
+        double[][] c = coords(Inputs.PointDistribution.UNIFORM, 5000, 21);
+        Metrics pm = new Metrics(), am = new Metrics();
+        KdTree fromPoints = KdTree.build(pts, pm);
+        KdTree fromArrays = KdTree.build(c[0], c[1], am);
+        assertEquals(am.allocations, pm.allocations);
+        assertArrayEquals(fromArrays.allNearest(null), fromPoints.allNearest(null));
+        assertThrows(IllegalArgumentException.class, () -> KdTree.build((Point2D[]) null, null));
+    }
+
+    @Test
+    void kNearestMatchesBrute() {
+        Random rnd = new Random(12);
+        for (Inputs.PointDistribution dist : Inputs.PointDistribution.values()) {
+            for (int n : new int[]{1, 9, 500, 20_000}) {
+                double[][] c = coords(dist, n, rnd.nextLong());
+                double[] xs = c[0], ys = c[1];
+                KdTree t = KdTree.build(xs, ys, new Metrics());
+                int k = Math.min(n, 5);
+                for (int q = 0; q < 30; q++) {
+                    double qx = rnd.nextDouble() * 1000, qy = rnd.nextDouble() * 1000;
+                    int[] got = t.kNearest(qx, qy, k, null);
+                    double[] want = bruteK(xs, ys, qx, qy, k);
+                    for (int i = 0; i < k; i++) assertEquals(want[i], d2(xs, ys, got[i], qx, qy), 0.0, dist + " n=" + n);
+                }
+            }
+        }
+    }
+
+    @Test
+    void parallelBuildAndBatchQueries() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            double[][] c = coords(Inputs.PointDistribution.CLUSTERED, 100_000, 5);
+            double[] xs = c[0], ys = c[1];
+            KdTree seq = KdTree.build(xs, ys, null);
+            KdTree par = KdTree.parallelBuild(xs, ys, new Metrics(), pool);
+            double[][] q = coords(Inputs.PointDistribution.UNIFORM, 5000, 6);
+            int[] a = seq.kNearest(q[0], q[1], 3, null);
+            int[] b = par.parallelKNearest(q[0], q[1], 3, new Metrics(), pool);
+            assertEquals(5000 * 3, b.length);
+            for (int i = 0; i < a.length; i++) {
+                int row = i / 3;
+                assertEquals(d2(xs, ys, a[i], q[0][row], q[1][row]), d2(xs, ys, b[i], q[0][row], q[1][row]), 0.0);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void radiusMatchesBrute() {
+        double[][] c = coords(Inputs.PointDistribution.UNIFORM, 10_000, 8);
+        double[] xs = c[0], ys = c[1];
+        KdTree t = KdTree.build(xs, ys, null);
+        Random rnd = new Random(9);
+        for (int q = 0; q < 50; q++) {
+            double qx = rnd.nextDouble() * 1000, qy = rnd.nextDouble() * 1000, r = rnd.nextDouble() * 40;
+            int[] got = t.withinRadius(qx, qy, r, null);
+            Arrays.sort(got);
+            int[] want = java.util.stream.IntStream.range(0, xs.length).filter(i -> d2(xs, ys, i, qx, qy) <= r * r).toArray();
+            assertArrayEquals(want, got);
+        }
+    }
+
+    @Test
+    void allNearestAndClosestPairs() {
+        double[][] c = coords(Inputs.PointDistribution.CLUSTERED, 3000, 10);
+        double[] xs = c[0], ys = c[1];
+        int n = xs.length;
+        Metrics m = new Metrics();
+        KdTree t = KdTree.build(xs, ys, m);
+        int[] nn = t.allNearest(m);
+        double[] pairs = new double[n * (n - 1) / 2];
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            double best = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < n; j++) {
+                double d = d2(xs, ys, j, xs[i], ys[i]);
+                if (j != i) best = Math.min(best, d);
+                if (j > i) pairs[p++] = Math.sqrt(d);
+            }
+            assertNotEquals(i, nn[i]);
+            assertEquals(best, d2(xs, ys, nn[i], xs[i], ys[i]), 0.0);
+        }
+        assertTrue(m.comparisons < (long) n * n / 4, "comparisons=" + m.comparisons);
+
+        Arrays.sort(pairs);
+        ClosestPair.IndexResult[] top = t.kClosestPairs(25, null);
+        for (int i = 0; i < top.length; i++) {
+            assertEquals(pairs[i], top[i].dist(), 1e-9);
+            assertTrue(top[i].i() < top[i].j());
+        }
+        assertEquals(ClosestPair.closest(xs, ys, null).dist(), top[0].dist(), 1e-9);
+    }
+}
\ No newline at end of file
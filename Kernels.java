@@ -0,0 +1,132 @@
+package algo.sort;
+
+import algo.common.Metrics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Выбор между векторными ядрами (VectorKernels, jdk.incubator.vector) и скалярным кодом.
+ * VectorKernels лежит в vector/ и собирается отдельно, с --add-modules jdk.incubator.vector;
+ * остальной код от модуля не зависит и без него собирается и работает скалярно.
+ * Векторный путь включается, если класс есть на classpath, модуль подключён при запуске,
+ * JIT умеет 256-битные векторы и не задано -Dalgo.vector=false.
+ * Алгоритмы берут его только с Metrics.NOOP: счётчики сравнений и обменов описывают
+ * скалярный алгоритм, поэтому замеры со счётчиками остаются на эталонном коде.
+ */
+public final class Kernels {
+    // static final MethodHandle JIT встраивает как прямой вызов
+    private static final MethodHandle SPLIT, SORT_SMALL, MERGE;
+    public static final boolean VECTOR;
+    // короче - выигрыш меньше накладных расходов на хвосты и дополнение
+    public static final int MIN_PARTITION = 64;
+    static final int MIN_MERGE = 32;
+    static final int MIN_NETWORK = 8;
+    public static final int MAX_NETWORK = 32;
+
+    static {
+        MethodHandle[] h = load();
+        VECTOR = h != null;
+        SPLIT = h == null ? null : h[0];
+        SORT_SMALL = h == null ? null : h[1];
+        MERGE = h == null ? null : h[2];
+    }
+
+    private Kernels() {}
+
+    private static MethodHandle[] load() {
+        if (!Boolean.parseBoolean(System.getProperty("algo.vector", "true"))) return null;
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try {
+            Class<?> c = Class.forName("algo.sort.VectorKernels");
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            MethodHandle supported = l.findStatic(c, "supported", MethodType.methodType(boolean.class));
+            if (!(boolean) supported.invokeExact()) return null;
+            return new MethodHandle[]{
+                    l.findStatic(c, "split", MethodType.methodType(int.class, int[].class, int.class, int.class, int.class, boolean.class)),
+                    l.findStatic(c, "sortSmall", MethodType.methodType(void.class, int[].class, int.class, int.class)),
+                    l.findStatic(c, "merge", MethodType.methodType(void.class, int[].class, int.class, int.class, int.class, int.class, int[].class, int.class))
+            };
+        } catch (Throwable e) {
+            // класса нет на classpath или модуль недоступен - скалярный путь
+            return null;
+        }
+    }
+
+    // ядра не бросают проверяемых исключений; остальное пробрасываем как есть
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException r) throw r;
+        if (e instanceof Error err) throw err;
+        throw new IllegalStateException(e);
+    }
+
+    public static boolean enabled(Metrics m) {
+        return VECTOR && m == Metrics.NOOP;
+    }
+
+    /**
+     * [lo, lt) < pivot, [lt, gt) == pivot, [gt, hi) > pivot; возвращает (lt << 32) | gt.
+     * Два прохода разбиения: по x < pivot, затем правой части по x <= pivot.
+     */
+    public static long partition3(int[] a, int lo, int hi, int pivot) {
+        int lt = split(a, lo, hi, pivot, false);
+        int gt = split(a, lt, hi, pivot, true);
+        return ((long) lt << 32) | (gt & 0xFFFFFFFFL);
+    }
+
+    // слева x < pivot (или x <= pivot при orEqual), возвращает начало правой части
+    public static int split(int[] a, int lo, int hi, int pivot, boolean orEqual) {
+        if (VECTOR && hi - lo >= MIN_PARTITION) {
+            try {
+                return (int) SPLIT.invokeExact(a, lo, hi, pivot, orEqual);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+        int i = lo, j = hi - 1;
+        while (true) {
+            while (i <= j && (a[i] < pivot || (orEqual && a[i] == pivot))) i++;
+            while (i <= j && !(a[j] < pivot || (orEqual && a[j] == pivot))) j--;
+            if (i >= j) return i;
+            int t = a[i]; a[i] = a[j]; a[j] = t;
+        }
+    }
+
+    // сортировка не больше MAX_NETWORK элементов
+    public static void sortSmall(int[] a, int lo, int hi) {
+        if (hi - lo > MAX_NETWORK) throw new IllegalArgumentException("block longer than " + MAX_NETWORK);
+        if (VECTOR && hi - lo >= MIN_NETWORK) {
+            try {
+                SORT_SMALL.invokeExact(a, lo, hi);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+            return;
+        }
+        for (int i = lo + 1; i < hi; i++) {
+            int x = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > x) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = x;
+        }
+    }
+
+    // слияние src[l1, r1) и src[l2, r2) в dst с позиции d; dst не пересекается с источниками
+    public static void merge(int[] src, int l1, int r1, int l2, int r2, int[] dst, int d) {
+        if (VECTOR && r1 - l1 >= MIN_MERGE && r2 - l2 >= MIN_MERGE) {
+            try {
+                MERGE.invokeExact(src, l1, r1, l2, r2, dst, d);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+            return;
+        }
+        while (l1 < r1 && l2 < r2) dst[d++] = src[l1] <= src[l2] ? src[l1++] : src[l2++];
+        while (l1 < r1) dst[d++] = src[l1++];
+        while (l2 < r2) dst[d++] = src[l2++];
+    }
+}
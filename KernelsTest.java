@@ -0,0 +1,111 @@
+package algo.sort;
+
+import algo.common.Inputs;
+import algo.common.Metrics;
+import algo.select.DeterministicSelect;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Векторный путь проверяется при запуске с vector/ на classpath и --add-modules
+// jdk.incubator.vector, скалярный - без них и на длинах ниже порогов
+public class KernelsTest {
+
+    @Test
+    void partition3SplitsAroundPivot() {
+        Random rnd = new Random(5);
+        for (int t = 0; t < 300; t++) {
+            int n = 1 + rnd.nextInt(t < 100 ? 100 : 5000);
+            int bound = t % 3 == 0 ? 4 : Integer.MAX_VALUE;
+            int[] a = new int[n + 6];
+            for (int i = 0; i < a.length; i++) a[i] = rnd.nextInt(bound) - bound / 2;
+            int lo = 3, hi = 3 + n;
+            int pivot = a[lo + rnd.nextInt(n)];
+            int[] before = Arrays.copyOf(a, a.length);
+            long r = Kernels.partition3(a, lo, hi, pivot);
+            int lt = (int) (r >>> 32), gt = (int) r;
+            assertTrue(lo <= lt && lt <= gt && gt <= hi, "trial " + t);
+            for (int i = lo; i < lt; i++) assertTrue(a[i] < pivot, "trial " + t);
+            for (int i = lt; i < gt; i++) assertEquals(pivot, a[i], "trial " + t);
+            for (int i = gt; i < hi; i++) assertTrue(a[i] > pivot, "trial " + t);
+            assertSameOutside(before, a, lo, hi);
+            int[] x = Arrays.copyOfRange(before, lo, hi), y = Arrays.copyOfRange(a, lo, hi);
+            Arrays.sort(x);
+            Arrays.sort(y);
+            assertArrayEquals(x, y, "trial " + t);
+        }
+    }
+
+    @Test
+    void splitHandlesOneSidedInput() {
+        int[] a = new int[1000];
+        Arrays.setAll(a, i -> i % 7);
+        assertEquals(1000, Kernels.split(a.clone(), 0, 1000, 100, false));
+        assertEquals(0, Kernels.split(a.clone(), 0, 1000, -1, true));
+        assertEquals(0, Kernels.split(a.clone(), 0, 1000, 0, false));
+    }
+
+    @Test
+    void sortSmallEveryLength() {
+        Random rnd = new Random(6);
+        for (int n = 0; n <= Kernels.MAX_NETWORK; n++) {
+            for (int t = 0; t < 20; t++) {
+                int bound = t % 2 == 0 ? 3 : Integer.MAX_VALUE;
+                int[] a = new int[n + 4];
+                for (int i = 0; i < a.length; i++) a[i] = t == 1 ? Integer.MAX_VALUE : rnd.nextInt(bound);
+                int[] expected = Arrays.copyOf(a, a.length);
+                Arrays.sort(expected, 2, 2 + n);
+                Kernels.sortSmall(a, 2, 2 + n);
+                assertArrayEquals(expected, a, "n=" + n + " trial " + t);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> Kernels.sortSmall(new int[40], 0, 40));
+    }
+
+    @Test
+    void mergeMatchesScalar() {
+        Random rnd = new Random(7);
+        for (int t = 0; t < 200; t++) {
+            int n1 = rnd.nextInt(300), n2 = rnd.nextInt(300);
+            int bound = t % 2 == 0 ? 10 : Integer.MAX_VALUE;
+            int[] src = new int[n1 + n2 + 5];
+            for (int i = 0; i < src.length; i++) src[i] = rnd.nextInt(bound);
+            Arrays.sort(src, 1, 1 + n1);
+            Arrays.sort(src, 1 + n1, 1 + n1 + n2);
+            int[] dst = new int[n1 + n2 + 2];
+            Kernels.merge(src, 1, 1 + n1, 1 + n1, 1 + n1 + n2, dst, 1);
+            int[] expected = Arrays.copyOfRange(src, 1, 1 + n1 + n2);
+            Arrays.sort(expected);
+            assertArrayEquals(expected, Arrays.copyOfRange(dst, 1, 1 + n1 + n2), "trial " + t);
+            assertEquals(0, dst[0]);
+            assertEquals(0, dst[dst.length - 1]);
+        }
+    }
+
+    // NOOP включает ядра, счётчики - эталонный скалярный код; результат обязан совпасть
+    @Test
+    void algorithmsAgreeWithAndWithoutKernels() {
+        for (Inputs.Distribution d : Inputs.Distribution.values()) {
+            int[] a = Inputs.ints(d, 100_000, 11);
+            int[] expected = Arrays.copyOf(a, a.length);
+            Arrays.sort(expected);
+            int[] q = a.clone(), s = a.clone();
+            QuickSort.sort(q, null);
+            MergeSort.sort(s, null);
+            assertArrayEquals(expected, q, "quick " + d);
+            assertArrayEquals(expected, s, "merge " + d);
+            for (int k : new int[]{0, 777, 50_000, 99_999}) {
+                assertEquals(expected[k], DeterministicSelect.select(a.clone(), k, null), "select " + d + " k=" + k);
+                assertEquals(expected[k], DeterministicSelect.select(a.clone(), k, new Metrics()), "select counted " + d);
+            }
+        }
+    }
+
+    private static void assertSameOutside(int[] before, int[] after, int lo, int hi) {
+        for (int i = 0; i < lo; i++) assertEquals(before[i], after[i]);
+        for (int i = hi; i < after.length; i++) assertEquals(before[i], after[i]);
+    }
+}
@@ -1,86 +1,674 @@
-package algo.sort;
-
-import algo.common.Metrics;
-
-import java.util.Arrays;
-
-public final class MergeSort {
-    private static final int INSERTION_CUTOFF = 24;
-    private MergeSort() {}
-
-    public static void sort(int[] a, Metrics m) {
-        if (a == null) throw new IllegalArgumentException("array is null");
-        if (m == null) m = new Metrics();
-        m.startTimer();
-        if (a.length > 1) {
-            int[] buf = new int[a.length];
-            m.addAlloc(a.length);
-            sortRec(a, 0, a.length, buf, m);
-        }
-        m.stopTimer();
-    }
-
-    private static void sortRec(int[] a, int lo, int hi, int[] buf, Metrics m) {
-        m.onEnter();
-        int n = hi - lo;
-        if (n <= INSERTION_CUTOFF) {
-            insertionSort(a, lo, hi, m);
-            m.onExit();
-            return;
-        }
-        int mid = lo + (n >> 1);
-        sortRec(a, lo, mid, buf, m);
-        sortRec(a, mid, hi, buf, m);
-
-
-        m.comparisons++;
-        if (a[mid - 1] <= a[mid]) {
-            m.onExit();
-            return;
-        }
-        merge(a, lo, mid, hi, buf, m);
-        m.onExit();
-    }
-
-    private static void insertionSort(int[] a, int lo, int hi, Metrics m) {
-        for (int i = lo + 1; i < hi; i++) {
-            int x = a[i];
-            int j = i - 1;
-            while (j >= lo) {
-                m.comparisons++;
-                if (a[j] <= x) break;
-                a[j + 1] = a[j];
-                m.swaps++;
-                j--;
-            }
-            a[j + 1] = x;
-        }
-    }
-
-    private static void merge(int[] a, int lo, int mid, int hi, int[] buf, Metrics m) {
-        int i = lo, j = mid, k = lo;
-        while (i < mid && j < hi) {
-            m.comparisons++;
-            if (a[i] <= a[j]) buf[k++] = a[i++];
-            else               buf[k++] = a[j++];
-        }
-        while (i < mid) buf[k++] = a[i++];
-        while (j < hi)  buf[k++] = a[j++];
-        System.arraycopy(buf, lo, a, lo, hi - lo);
-        m.swaps += (hi - lo);
-    }
-
-    public static boolean isSorted(int[] a) {
-        for (int i = 1; i < a.length; i++) if (a[i-1] > a[i]) return false;
-        return true;
-    }
-
-
-    public static void main(String[] args) {
-        int[] demo = {5,4,3,2,1,7,6,9,8,0};
-        Metrics m = new Metrics();
-        sort(demo, m);
-        System.out.println(Arrays.toString(demo));
-        System.out.println(m);
-    }
+package algo.sort;
+
+import algo.common.Metrics;
+import algo.common.Phase;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public final class MergeSort {
+    private static final int INSERTION_CUTOFF = 24;
+    private static final int PARALLEL_CUTOFF = 1 << 13;
+    private static final int PARALLEL_MERGE_CUTOFF = 1 << 13;
+    private static final int MIN_MERGE = 32;
+    private static final int MIN_GALLOP = 7;
+    private static final int MAX_RUNS = 49;
+    // больше этого буфер в пуле потока не держим, чтобы не закреплять за потоком гигабайты
+    private static final int POOLED_MAX = 1 << 22;
+    private static final ThreadLocal<int[]> POOL = ThreadLocal.withInitial(() -> new int[0]);
+    private MergeSort() {}
+
+    public static void sort(int[] a, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        if (a.length > 1) {
+            int[] buf = new int[a.length];
+            m.addAlloc(a.length);
+            sortRec(a, 0, a.length, buf, m);
+        }
+        m.stopTimer();
+    }
+
+    // буфер от вызывающего: buf.length >= a.length, содержимое buf не важно
+    public static void sort(int[] a, int[] buf, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        checkBuffer(a, buf);
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        if (a.length > 1) sortRec(a, 0, a.length, buf, m);
+        m.stopTimer();
+    }
+
+    // Без копирования обратно после каждого слияния: a и buf меняются ролями источника и
+    // приёмника на каждом уровне, поэтому элемент переписывается один раз за уровень.
+    // Одна начальная копия a -> buf.
+    public static void sortPingPong(int[] a, int[] buf, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        checkBuffer(a, buf);
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        int n = a.length;
+        if (n > 1) {
+            System.arraycopy(a, 0, buf, 0, n);
+            m.addSwaps(n);
+            pingPong(buf, a, 0, n, m);
+        }
+        m.stopTimer();
+    }
+
+    // ping-pong с буфером из пула потока: после первого вызова того же (или меньшего) размера
+    // новых выделений нет, что видно по m.allocations
+    public static void sortPooled(int[] a, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (m == null) m = Metrics.NOOP;
+        sortPingPong(a, pooledBuffer(a.length, m), m);
+    }
+
+    private static int[] pooledBuffer(int n, Metrics m) {
+        if (n > POOLED_MAX) {
+            m.addAlloc(n);
+            return new int[n];
+        }
+        int[] buf = POOL.get();
+        if (buf.length < n) {
+            int size = Math.max(n, Math.min(POOLED_MAX, buf.length * 2));
+            buf = new int[size];
+            POOL.set(buf);
+            m.addAlloc(size);
+        }
+        return buf;
+    }
+
+    private static void checkBuffer(int[] a, int[] buf) {
+        if (buf == null || buf.length < a.length) throw new IllegalArgumentException("buffer is smaller than array");
+    }
+
+    public static void parallelSort(int[] a, Metrics m, ForkJoinPool pool) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (pool == null) throw new IllegalArgumentException("pool is null");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        if (a.length > 1) {
+            int[] buf = new int[a.length];
+            m.addAlloc(a.length);
+            SortTask root = new SortTask(a, 0, a.length, buf, m.fork());
+            pool.invoke(root);
+            m.merge(root.m);
+        }
+        m.stopTimer();
+    }
+
+    // Адаптивный режим для почти отсортированных данных: ищем готовые серии (убывающие
+    // разворачиваем), короткие добиваем вставками до minRun, сливаем по правилам стека серий
+    // как в TimSort, а при слиянии переходим на галоп, когда одна сторона выигрывает подряд.
+    // На уже отсортированном входе - n - 1 сравнение и ни одного перемещения.
+    public static void adaptiveSort(int[] a, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        int n = a.length;
+        if (n > 1) {
+            RunMerger runs = new RunMerger(a, m);
+            int minRun = minRunLength(n);
+            int lo = 0;
+            while (lo < n) {
+                int runLen = countRunAndMakeAscending(a, lo, n, m);
+                if (runLen < minRun) {
+                    int force = Math.min(n - lo, minRun);
+                    long t = m.phaseBegin(Phase.MERGESORT_INSERTION);
+                    binaryInsertionSort(a, lo, lo + force, lo + runLen, m);
+                    m.phaseEnd(Phase.MERGESORT_INSERTION, t, force);
+                    runLen = force;
+                }
+                runs.push(lo, runLen);
+                runs.mergeCollapse();
+                lo += runLen;
+            }
+            runs.mergeForceCollapse();
+        }
+        m.stopTimer();
+    }
+
+    private static void sortRec(int[] a, int lo, int hi, int[] buf, Metrics m) {
+        m.onEnter(hi - lo);
+        int n = hi - lo;
+        if (n <= INSERTION_CUTOFF) {
+            insertionSort(a, lo, hi, m);
+            m.onExit();
+            return;
+        }
+        int mid = lo + (n >> 1);
+        sortRec(a, lo, mid, buf, m);
+        sortRec(a, mid, hi, buf, m);
+
+
+        m.onCompare();
+        if (a[mid - 1] <= a[mid]) {
+            m.onExit();
+            return;
+        }
+        merge(a, lo, mid, hi, buf, m);
+        m.onExit();
+    }
+
+    // на входе src и dst совпадают на [lo, hi); на выходе dst[lo, hi) отсортирован, src - мусор
+    private static void pingPong(int[] src, int[] dst, int lo, int hi, Metrics m) {
+        m.onEnter(hi - lo);
+        int n = hi - lo;
+        if (n <= INSERTION_CUTOFF) {
+            insertionSort(dst, lo, hi, m);
+            m.onExit();
+            return;
+        }
+        int mid = lo + (n >> 1);
+        pingPong(dst, src, lo, mid, m);
+        pingPong(dst, src, mid, hi, m);
+
+        m.onCompare();
+        if (src[mid - 1] <= src[mid]) System.arraycopy(src, lo, dst, lo, n);
+        else                          mergeInto(src, lo, mid, mid, hi, dst, lo, m);
+        m.addSwaps(n);
+        m.onExit();
+    }
+
+    private static void insertionSort(int[] a, int lo, int hi, Metrics m) {
+        long t = m.phaseBegin(Phase.MERGESORT_INSERTION);
+        if (Kernels.enabled(m) && hi - lo <= Kernels.MAX_NETWORK) {
+            Kernels.sortSmall(a, lo, hi);
+            m.phaseEnd(Phase.MERGESORT_INSERTION, t, hi - lo);
+            return;
+        }
+        for (int i = lo + 1; i < hi; i++) {
+            int x = a[i];
+            int j = i - 1;
+            while (j >= lo) {
+                m.onCompare();
+                if (a[j] <= x) break;
+                a[j + 1] = a[j];
+                m.onSwap();
+                j--;
+            }
+            a[j + 1] = x;
+        }
+        m.phaseEnd(Phase.MERGESORT_INSERTION, t, hi - lo);
+    }
+
+    private static void merge(int[] a, int lo, int mid, int hi, int[] buf, Metrics m) {
+        long t = m.phaseBegin(Phase.MERGESORT_MERGE);
+        if (Kernels.enabled(m)) {
+            Kernels.merge(a, lo, mid, mid, hi, buf, lo);
+            System.arraycopy(buf, lo, a, lo, hi - lo);
+            m.phaseEnd(Phase.MERGESORT_MERGE, t, hi - lo);
+            return;
+        }
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) {
+            m.onCompare();
+            if (a[i] <= a[j]) buf[k++] = a[i++];
+            else               buf[k++] = a[j++];
+        }
+        while (i < mid) buf[k++] = a[i++];
+        while (j < hi)  buf[k++] = a[j++];
+        System.arraycopy(buf, lo, a, lo, hi - lo);
+        m.addSwaps(hi - lo);
+        m.phaseEnd(Phase.MERGESORT_MERGE, t, hi - lo);
+    }
+
+    // сливает a[l1..r1) и a[l2..r2) в dst начиная с позиции d
+    private static void mergeInto(int[] a, int l1, int r1, int l2, int r2, int[] dst, int d, Metrics m) {
+        long t = m.phaseBegin(Phase.MERGESORT_MERGE);
+        int n = (r1 - l1) + (r2 - l2);
+        if (Kernels.enabled(m)) {
+            Kernels.merge(a, l1, r1, l2, r2, dst, d);
+            m.phaseEnd(Phase.MERGESORT_MERGE, t, n);
+            return;
+        }
+        while (l1 < r1 && l2 < r2) {
+            m.onCompare();
+            if (a[l1] <= a[l2]) dst[d++] = a[l1++];
+            else                dst[d++] = a[l2++];
+        }
+        while (l1 < r1) dst[d++] = a[l1++];
+        while (l2 < r2) dst[d++] = a[l2++];
+        m.phaseEnd(Phase.MERGESORT_MERGE, t, n);
+    }
+
+    // первый индекс в [lo, hi), где a[i] >= x
+    private static int lowerBound(int[] a, int lo, int hi, int x, Metrics m) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            m.onCompare();
+            if (a[mid] < x) lo = mid + 1;
+            else            hi = mid;
+        }
+        return lo;
+    }
+
+    private static int minRunLength(int n) {
+        int r = 0;
+        while (n >= MIN_MERGE) {
+            r |= (n & 1);
+            n >>= 1;
+        }
+        return n + r;
+    }
+
+    // длина серии с позиции lo; строго убывающая серия разворачивается на месте
+    private static int countRunAndMakeAscending(int[] a, int lo, int hi, Metrics m) {
+        int runHi = lo + 1;
+        if (runHi == hi) return 1;
+        m.onCompare();
+        if (a[runHi++] < a[lo]) {
+            while (runHi < hi) {
+                m.onCompare();
+                if (a[runHi] >= a[runHi - 1]) break;
+                runHi++;
+            }
+            for (int i = lo, j = runHi - 1; i < j; i++, j--) {
+                int t = a[i]; a[i] = a[j]; a[j] = t;
+                m.onSwap();
+            }
+        } else {
+            while (runHi < hi) {
+                m.onCompare();
+                if (a[runHi] < a[runHi - 1]) break;
+                runHi++;
+            }
+        }
+        return runHi - lo;
+    }
+
+    // a[lo..start) уже отсортирован; вставляем остальные с бинарным поиском места
+    private static void binaryInsertionSort(int[] a, int lo, int hi, int start, Metrics m) {
+        for (int i = start; i < hi; i++) {
+            int x = a[i];
+            int left = lo, right = i;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                m.onCompare();
+                if (x < a[mid]) right = mid;
+                else            left = mid + 1;
+            }
+            System.arraycopy(a, left, a, left + 1, i - left);
+            a[left] = x;
+            m.addSwaps(i - left);
+        }
+    }
+
+    // Позиция k в a[base..base+len), такая что a[base+k-1] < key <= a[base+k].
+    // Поиск экспоненциальный от hint, потом бинарный: O(log k) сравнений, если ответ рядом с hint.
+    private static int gallopLeft(int key, int[] a, int base, int len, int hint, Metrics m) {
+        int lastOfs = 0, ofs = 1;
+        m.onCompare();
+        if (key > a[base + hint]) {
+            int maxOfs = len - hint;
+            while (ofs < maxOfs) {
+                m.onCompare();
+                if (key <= a[base + hint + ofs]) break;
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            lastOfs += hint;
+            ofs += hint;
+        } else {
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs) {
+                m.onCompare();
+                if (key > a[base + hint - ofs]) break;
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            int t = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - t;
+        }
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int mid = lastOfs + ((ofs - lastOfs) >>> 1);
+            m.onCompare();
+            if (key > a[base + mid]) lastOfs = mid + 1;
+            else                     ofs = mid;
+        }
+        return ofs;
+    }
+
+    // то же, но a[base+k-1] <= key < a[base+k]: равные ключу остаются слева
+    private static int gallopRight(int key, int[] a, int base, int len, int hint, Metrics m) {
+        int lastOfs = 0, ofs = 1;
+        m.onCompare();
+        if (key < a[base + hint]) {
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs) {
+                m.onCompare();
+                if (key >= a[base + hint - ofs]) break;
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            int t = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - t;
+        } else {
+            int maxOfs = len - hint;
+            while (ofs < maxOfs) {
+                m.onCompare();
+                if (key < a[base + hint + ofs]) break;
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            lastOfs += hint;
+            ofs += hint;
+        }
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int mid = lastOfs + ((ofs - lastOfs) >>> 1);
+            m.onCompare();
+            if (key < a[base + mid]) ofs = mid;
+            else                     lastOfs = mid + 1;
+        }
+        return ofs;
+    }
+
+    // стек серий adaptiveSort и слияние соседних серий с галопом
+    private static final class RunMerger {
+        private final int[] a;
+        private final Metrics m;
+        private final int[] runBase = new int[MAX_RUNS];
+        private final int[] runLen = new int[MAX_RUNS];
+        private int stackSize;
+        private int[] tmp = new int[0];
+        private int minGallop = MIN_GALLOP;
+
+        RunMerger(int[] a, Metrics m) {
+            this.a = a;
+            this.m = m;
+        }
+
+        void push(int base, int len) {
+            runBase[stackSize] = base;
+            runLen[stackSize] = len;
+            stackSize++;
+        }
+
+        // инвариант стека: len[i-2] > len[i-1] + len[i] и len[i-1] > len[i]
+        void mergeCollapse() {
+            while (stackSize > 1) {
+                int n = stackSize - 2;
+                if (n > 0 && runLen[n - 1] <= runLen[n] + runLen[n + 1]
+                        || n > 1 && runLen[n - 2] <= runLen[n] + runLen[n - 1]) {
+                    if (runLen[n - 1] < runLen[n + 1]) n--;
+                } else if (runLen[n] > runLen[n + 1]) {
+                    break;
+                }
+                mergeAt(n);
+            }
+        }
+
+        void mergeForceCollapse() {
+            while (stackSize > 1) {
+                int n = stackSize - 2;
+                if (n > 0 && runLen[n - 1] < runLen[n + 1]) n--;
+                mergeAt(n);
+            }
+        }
+
+        private void mergeAt(int i) {
+            int base1 = runBase[i], len1 = runLen[i];
+            int base2 = runBase[i + 1], len2 = runLen[i + 1];
+            runLen[i] = len1 + len2;
+            if (i == stackSize - 3) {
+                runBase[i + 1] = runBase[i + 2];
+                runLen[i + 1] = runLen[i + 2];
+            }
+            stackSize--;
+
+            // начало первой серии, не превосходящее a[base2], и хвост второй,
+            // не меньший последнего элемента первой, уже на своих местах
+            int k = gallopRight(a[base2], a, base1, len1, 0, m);
+            base1 += k;
+            len1 -= k;
+            if (len1 == 0) return;
+            len2 = gallopLeft(a[base1 + len1 - 1], a, base2, len2, len2 - 1, m);
+            if (len2 == 0) return;
+
+            long t = m.phaseBegin(Phase.MERGESORT_MERGE);
+            if (len1 <= len2) mergeLo(base1, len1, base2, len2);
+            else              mergeHi(base1, len1, base2, len2);
+            m.phaseEnd(Phase.MERGESORT_MERGE, t, len1 + len2);
+        }
+
+        private int[] ensureTmp(int len) {
+            if (tmp.length < len) {
+                int size = Math.max(len, Math.min(a.length >>> 1, tmp.length * 2));
+                tmp = new int[size];
+                m.addAlloc(size);
+            }
+            return tmp;
+        }
+
+        // первая серия короче: копируем её в tmp и сливаем слева направо
+        private void mergeLo(int base1, int len1, int base2, int len2) {
+            int[] t = ensureTmp(len1);
+            System.arraycopy(a, base1, t, 0, len1);
+            m.addSwaps(len1);
+            int i = 0, j = base2, end2 = base2 + len2, d = base1;
+            int minG = minGallop;
+            outer:
+            while (true) {
+                int wins1 = 0, wins2 = 0;
+                do {
+                    m.onCompare();
+                    if (a[j] < t[i]) {
+                        a[d++] = a[j++];
+                        m.onSwap();
+                        wins2++;
+                        wins1 = 0;
+                        if (j == end2) break outer;
+                    } else {
+                        a[d++] = t[i++];
+                        m.onSwap();
+                        wins1++;
+                        wins2 = 0;
+                        if (i == len1) break outer;
+                    }
+                } while ((wins1 | wins2) < minG);
+
+                do {
+                    int k1 = gallopRight(a[j], t, i, len1 - i, 0, m);
+                    System.arraycopy(t, i, a, d, k1);
+                    m.addSwaps(k1);
+                    i += k1;
+                    d += k1;
+                    if (i == len1) break outer;
+                    int k2 = gallopLeft(t[i], a, j, end2 - j, 0, m);
+                    System.arraycopy(a, j, a, d, k2);
+                    m.addSwaps(k2);
+                    j += k2;
+                    d += k2;
+                    if (j == end2) break outer;
+                    if (minG > 1) minG--;
+                    wins1 = k1;
+                    wins2 = k2;
+                } while (wins1 >= MIN_GALLOP || wins2 >= MIN_GALLOP);
+                minG += 2;
+            }
+            // остаток второй серии уже на месте; остаток первой дописываем из tmp
+            System.arraycopy(t, i, a, d, len1 - i);
+            m.addSwaps(len1 - i);
+            minGallop = Math.max(1, minG);
+        }
+
+        // вторая серия короче: копируем её в tmp и сливаем справа налево
+        private void mergeHi(int base1, int len1, int base2, int len2) {
+            int[] t = ensureTmp(len2);
+            System.arraycopy(a, base2, t, 0, len2);
+            m.addSwaps(len2);
+            int i = base1 + len1 - 1, j = len2 - 1, d = base2 + len2 - 1;
+            int minG = minGallop;
+            outer:
+            while (true) {
+                int wins1 = 0, wins2 = 0;
+                do {
+                    m.onCompare();
+                    if (t[j] < a[i]) {
+                        a[d--] = a[i--];
+                        m.onSwap();
+                        wins1++;
+                        wins2 = 0;
+                        if (i < base1) break outer;
+                    } else {
+                        a[d--] = t[j--];
+                        m.onSwap();
+                        wins2++;
+                        wins1 = 0;
+                        if (j < 0) break outer;
+                    }
+                } while ((wins1 | wins2) < minG);
+
+                do {
+                    int left1 = i + 1 - base1;
+                    int k1 = left1 - gallopRight(t[j], a, base1, left1, left1 - 1, m);
+                    System.arraycopy(a, i + 1 - k1, a, d + 1 - k1, k1);
+                    m.addSwaps(k1);
+                    i -= k1;
+                    d -= k1;
+                    if (i < base1) break outer;
+                    int k2 = j + 1 - gallopLeft(a[i], t, 0, j + 1, j, m);
+                    System.arraycopy(t, j + 1 - k2, a, d + 1 - k2, k2);
+                    m.addSwaps(k2);
+                    j -= k2;
+                    d -= k2;
+                    if (j < 0) break outer;
+                    if (minG > 1) minG--;
+                    wins1 = k1;
+                    wins2 = k2;
+                } while (wins1 >= MIN_GALLOP || wins2 >= MIN_GALLOP);
+                minG += 2;
+            }
+            // остаток первой серии уже на месте; остаток второй дописываем из tmp
+            System.arraycopy(t, 0, a, base1, j + 1);
+            m.addSwaps(j + 1);
+            minGallop = Math.max(1, minG);
+        }
+    }
+
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a, buf;
+        private final int lo, hi;
+        final Metrics m;
+
+        SortTask(int[] a, int lo, int hi, int[] buf, Metrics m) {
+            this.a = a; this.lo = lo; this.hi = hi; this.buf = buf; this.m = m;
+        }
+
+        @Override protected void compute() {
+            int n = hi - lo;
+            if (n <= PARALLEL_CUTOFF) {
+                sortRec(a, lo, hi, buf, m);
+                return;
+            }
+            m.onEnter(n);
+            int mid = lo + (n >> 1);
+            SortTask left = new SortTask(a, lo, mid, buf, m.fork());
+            SortTask right = new SortTask(a, mid, hi, buf, m.fork());
+            invokeAll(left, right);
+            m.merge(left.m);
+            m.merge(right.m);
+
+            m.onCompare();
+            if (a[mid - 1] > a[mid]) {
+                MergeTask merge = new MergeTask(a, lo, mid, mid, hi, buf, lo, m.fork());
+                merge.invoke();
+                m.merge(merge.m);
+                new CopyTask(buf, a, lo, hi).invoke();
+                m.addSwaps(n);
+            }
+            m.onExit();
+        }
+    }
+
+    // параллельное слияние: делим большую половину пополам, точку раздела второй ищем бинпоиском
+    private static final class MergeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a, buf;
+        private final int l1, r1, l2, r2, dst;
+        final Metrics m;
+
+        MergeTask(int[] a, int l1, int r1, int l2, int r2, int[] buf, int dst, Metrics m) {
+            this.a = a; this.l1 = l1; this.r1 = r1; this.l2 = l2; this.r2 = r2;
+            this.buf = buf; this.dst = dst; this.m = m;
+        }
+
+        @Override protected void compute() {
+            int n1 = r1 - l1, n2 = r2 - l2;
+            if (n1 + n2 <= PARALLEL_MERGE_CUTOFF) {
+                mergeInto(a, l1, r1, l2, r2, buf, dst, m);
+                return;
+            }
+            MergeTask left, right;
+            if (n1 >= n2) {
+                int m1 = (l1 + r1) >>> 1;
+                int m2 = lowerBound(a, l2, r2, a[m1], m);
+                int d = dst + (m1 - l1) + (m2 - l2);
+                left  = new MergeTask(a, l1, m1, l2, m2, buf, dst, m.fork());
+                right = new MergeTask(a, m1, r1, m2, r2, buf, d, m.fork());
+            } else {
+                int m2 = (l2 + r2) >>> 1;
+                int m1 = lowerBound(a, l1, r1, a[m2], m);
+                int d = dst + (m1 - l1) + (m2 - l2);
+                left  = new MergeTask(a, l1, m1, l2, m2, buf, dst, m.fork());
+                right = new MergeTask(a, m1, r1, m2, r2, buf, d, m.fork());
+            }
+            invokeAll(left, right);
+            m.merge(left.m);
+            m.merge(right.m);
+        }
+    }
+
+    private static final class CopyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src, dst;
+        private final int lo, hi;
+
+        CopyTask(int[] src, int[] dst, int lo, int hi) {
+            this.src = src; this.dst = dst; this.lo = lo; this.hi = hi;
+        }
+
+        @Override protected void compute() {
+            int n = hi - lo;
+            if (n <= PARALLEL_MERGE_CUTOFF << 2) {
+                System.arraycopy(src, lo, dst, lo, n);
+                return;
+            }
+            int mid = lo + (n >> 1);
+            invokeAll(new CopyTask(src, dst, lo, mid), new CopyTask(src, dst, mid, hi));
+        }
+    }
+
+    public static boolean isSorted(int[] a) {
+        for (int i = 1; i < a.length; i++) if (a[i-1] > a[i]) return false;
+        return true;
+    }
+
+
+    public static void main(String[] args) {
+        int[] demo = {5,4,3,2,1,7,6,9,8,0};
+        Metrics m = new Metrics();
+        sort(demo, m);
+        System.out.println(Arrays.toString(demo));
+        System.out.println(m);
+    }
 }
\ No newline at end of file
@@ -1,45 +1,200 @@
-package algo.sort;
-
-import algo.common.Metrics;
-import org.junit.jupiter.api.Test;
-import java.util.Arrays;
-import java.util.Random;
-import static org.junit.jupiter.api.Assertions.*;
-
-public class MergeSortTest {
-
-    @Test
-    void smallSorted() {
-        int[] a = {1,2,3,4,5};
-        Metrics m = new Metrics();
-        MergeSort.sort(a, m);
-        assertTrue(MergeSort.isSorted(a));
-        assertTrue(m.maxRecursionDepth >= 0);
-    }
-
-    @Test
-    void randomArrays() {
-        Random rnd = new Random(123);
-        for (int t = 0; t < 30; t++) {
-            int n = 800 + rnd.nextInt(1200);
-            int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
-            int[] b = Arrays.copyOf(a, a.length);
-            Metrics m = new Metrics();
-            MergeSort.sort(a, m);
-            Arrays.sort(b);
-            assertArrayEquals(b, a, "mismatch on trial " + t);
-            int bound = 1 + (int)Math.ceil(Math.log(n) / Math.log(2)) + 4;
-            assertTrue(m.maxRecursionDepth <= bound, "depth too large: " + m.maxRecursionDepth + " > " + bound);
-        }
-    }
-
-    @Test
-    void adversarialDescending() {
-        int n = 3000;
-        int[] a = new int[n];
-        for (int i = 0; i < n; i++) a[i] = n - i;
-        Metrics m = new Metrics();
-        MergeSort.sort(a, m);
-        assertTrue(MergeSort.isSorted(a));
-    }
+package algo.sort;
+
+import algo.common.Metrics;
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MergeSortTest {
+
+    @Test
+    void smallSorted() {
+        int[] a = {1,2,3,4,5};
+        Metrics m = new Metrics();
+        MergeSort.sort(a, m);
+        assertTrue(MergeSort.isSorted(a));
+        assertTrue(m.maxRecursionDepth >= 0);
+    }
+
+    @Test
+    void randomArrays() {
+        Random rnd = new Random(123);
+        for (int t = 0; t < 30; t++) {
+            int n = 800 + rnd.nextInt(1200);
+            int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
+            int[] b = Arrays.copyOf(a, a.length);
+            Metrics m = new Metrics();
+            MergeSort.sort(a, m);
+            Arrays.sort(b);
+            assertArrayEquals(b, a, "mismatch on trial " + t);
+            int bound = 1 + (int)Math.ceil(Math.log(n) / Math.log(2)) + 4;
+            assertTrue(m.maxRecursionDepth <= bound, "depth too large: " + m.maxRecursionDepth + " > " + bound);
+        }
+    }
+
+    @Test
+    void adversarialDescending() {
+        int n = 3000;
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) a[i] = n - i;
+        Metrics m = new Metrics();
+        MergeSort.sort(a, m);
+        assertTrue(MergeSort.isSorted(a));
+    }
+
+    @Test
+    void parallelMatchesSequential() {
+        Random rnd = new Random(7);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int n : new int[]{0, 1, 100, 8193, 50_000, 300_000}) {
+                int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
+                int[] b = Arrays.copyOf(a, a.length);
+                Metrics m = new Metrics();
+                MergeSort.parallelSort(a, m, pool);
+                Arrays.sort(b);
+                assertArrayEquals(b, a, "n=" + n);
+                if (n > 1) assertTrue(m.comparisons > 0);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parallelManyDuplicates() {
+        Random rnd = new Random(11);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            int[] a = rnd.ints(200_000, 0, 8).toArray();
+            int[] b = Arrays.copyOf(a, a.length);
+            MergeSort.parallelSort(a, new Metrics(), pool);
+            Arrays.sort(b);
+            assertArrayEquals(b, a);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void adaptiveMatchesArraysSort() {
+        Random rnd = new Random(21);
+        for (int n = 0; n < 300; n++) {
+            int[] a = rnd.ints(n, -50, 50).toArray();
+            int[] b = Arrays.copyOf(a, a.length);
+            MergeSort.adaptiveSort(a, new Metrics());
+            Arrays.sort(b);
+            assertArrayEquals(b, a, "n=" + n);
+        }
+        for (int t = 0; t < 20; t++) {
+            int n = 1000 + rnd.nextInt(100_000);
+            int[] a = t % 2 == 0 ? rnd.ints(n).toArray() : rnd.ints(n, 0, 10).toArray();
+            int[] b = Arrays.copyOf(a, a.length);
+            MergeSort.adaptiveSort(a, new Metrics());
+            Arrays.sort(b);
+            assertArrayEquals(b, a, "trial " + t);
+        }
+    }
+
+    @Test
+    void adaptiveOnSortedBatches() {
+        Random rnd = new Random(22);
+        int n = 200_000;
+        int[] a = new int[n];
+        // отсортированные пачки, дописанные друг за другом (соседние немного перекрываются),
+        // плюс локальные перестановки
+        int batch = 20_000;
+        for (int s = 0; s < n; s += batch) {
+            int[] part = rnd.ints(batch, s * 10, s * 10 + batch * 12).sorted().toArray();
+            System.arraycopy(part, 0, a, s, batch);
+        }
+        for (int i = 0; i < 50; i++) {
+            int p = rnd.nextInt(n - 8), q = p + 1 + rnd.nextInt(7);
+            int t = a[p]; a[p] = a[q]; a[q] = t;
+        }
+        int[] b = Arrays.copyOf(a, a.length);
+        int[] c = Arrays.copyOf(a, a.length);
+
+        Metrics adaptive = new Metrics();
+        MergeSort.adaptiveSort(a, adaptive);
+        Metrics plain = new Metrics();
+        MergeSort.sort(b, plain);
+        Arrays.sort(c);
+        assertArrayEquals(c, a);
+        assertTrue(adaptive.comparisons < plain.comparisons,
+                adaptive.comparisons + " vs " + plain.comparisons);
+        assertTrue(adaptive.swaps * 2 < plain.swaps, adaptive.swaps + " vs " + plain.swaps);
+    }
+
+    @Test
+    void adaptiveLinearOnMonotone() {
+        int n = 100_000;
+        int[] up = new int[n], down = new int[n];
+        for (int i = 0; i < n; i++) {
+            up[i] = i;
+            down[i] = n - i;
+        }
+        Metrics mu = new Metrics();
+        MergeSort.adaptiveSort(up, mu);
+        assertTrue(MergeSort.isSorted(up));
+        assertEquals(n - 1, mu.comparisons);
+        assertEquals(0, mu.swaps);
+
+        Metrics md = new Metrics();
+        MergeSort.adaptiveSort(down, md);
+        assertTrue(MergeSort.isSorted(down));
+        assertEquals(n - 1, md.comparisons);
+    }
+
+    @Test
+    void callerBufferAndPingPong() {
+        Random rnd = new Random(31);
+        for (int n = 0; n < 2000; n += 37) {
+            int[] a = rnd.ints(n, -1000, 1000).toArray();
+            int[] b = Arrays.copyOf(a, a.length);
+            int[] c = Arrays.copyOf(a, a.length);
+            int[] buf = new int[n + 5];
+            Metrics m1 = new Metrics();
+            Metrics m2 = new Metrics();
+            MergeSort.sort(a, buf, m1);
+            MergeSort.sortPingPong(b, buf, m2);
+            Arrays.sort(c);
+            assertArrayEquals(c, a, "n=" + n);
+            assertArrayEquals(c, b, "ping-pong n=" + n);
+            assertEquals(0, m1.allocations);
+            assertEquals(0, m2.allocations);
+        }
+        assertThrows(IllegalArgumentException.class, () -> MergeSort.sort(new int[10], new int[9], null));
+        assertThrows(IllegalArgumentException.class, () -> MergeSort.sortPingPong(new int[10], null, null));
+    }
+
+    @Test
+    void pooledSteadyStateAllocatesNothing() {
+        Random rnd = new Random(32);
+        Metrics first = new Metrics();
+        MergeSort.sortPooled(rnd.ints(50_000).toArray(), first);
+        for (int t = 0; t < 10; t++) {
+            int[] a = rnd.ints(1 + rnd.nextInt(50_000)).toArray();
+            int[] b = Arrays.copyOf(a, a.length);
+            Metrics m = new Metrics();
+            MergeSort.sortPooled(a, m);
+            Arrays.sort(b);
+            assertArrayEquals(b, a);
+            assertEquals(0, m.allocations, "trial " + t);
+        }
+    }
+
+    @Test
+    void pingPongComparesLikeClassic() {
+        int[] a = new Random(33).ints(100_000).toArray();
+        int[] b = Arrays.copyOf(a, a.length);
+        Metrics classic = new Metrics();
+        Metrics pingPong = new Metrics();
+        MergeSort.sort(a, classic);
+        MergeSort.sortPingPong(b, new int[b.length], pingPong);
+        assertArrayEquals(a, b);
+        assertEquals(classic.comparisons, pingPong.comparisons);
+    }
 }
\ No newline at end of file
@@ -1,30 +1,111 @@
-package algo.common;
-
-public final class Metrics {
-    public long comparisons;
-    public long swaps;
-    public long allocations;
-    private int recursionDepth;
-    public int maxRecursionDepth;
-    private long startNanos;
-    public long elapsedNanos;
-
-    public void startTimer() { startNanos = System.nanoTime(); }
-    public void stopTimer()  { elapsedNanos = System.nanoTime() - startNanos; }
-
-    public void onEnter() {
-        recursionDepth++;
-        if (recursionDepth > maxRecursionDepth) maxRecursionDepth = recursionDepth;
-    }
-    public void onExit()  { recursionDepth--; }
-
-    public void addAlloc(long units) { allocations += units; }
-
-    @Override public String toString() {
-        return "Metrics{comparisons=" + comparisons +
-                ", swaps=" + swaps +
-                ", allocations=" + allocations +
-                ", maxRecursionDepth=" + maxRecursionDepth +
-                ", elapsedNanos=" + elapsedNanos + "}";
-    }
+package algo.common;
+
+// Счётчики для экспериментов. Metrics.NOOP ничего не считает: при вызовах только с ним
+// JIT инлайнит пустые методы и инструментирование исчезает из горячих циклов.
+public class Metrics {
+    public static final Metrics NOOP = new Noop();
+
+    public long comparisons;
+    public long swaps;
+    public long allocations;
+    public long passes;
+    public long bytesMoved;
+    public long ioBytes;
+    private int recursionDepth;
+    public int maxRecursionDepth;
+    private long startNanos;
+    public long elapsedNanos;
+
+    public void startTimer() { startNanos = System.nanoTime(); }
+    public void stopTimer()  { elapsedNanos = System.nanoTime() - startNanos; }
+
+    public void onCompare() { comparisons++; }
+    public void onSwap()    { swaps++; }
+    public void addSwaps(long n) { swaps += n; }
+
+    public void onEnter() {
+        recursionDepth++;
+        if (recursionDepth > maxRecursionDepth) maxRecursionDepth = recursionDepth;
+    }
+    public void onExit()  { recursionDepth--; }
+    // вход в подзадачу известного размера; ProfiledMetrics строит по ним гистограмму
+    public void onEnter(int size) { onEnter(); }
+
+    protected int depth() { return recursionDepth; }
+
+    // t = phaseBegin(p); ...; phaseEnd(p, t, size). Здесь только событие JFR, если идёт запись;
+    // таймеры и счётчики по фазам - в ProfiledMetrics
+    public long phaseBegin(Phase p) { return PhaseEvent.start(); }
+    public void phaseEnd(Phase p, long start, int size) {
+        if (start != 0) PhaseEvent.emit(p, start, System.nanoTime(), size, depth());
+    }
+
+    public void addAlloc(long units) { allocations += units; }
+
+    // для не-сравнительных алгоритмов (radix): проходы по данным и перемещённые байты
+    public void onPass() { passes++; }
+    public void addBytesMoved(long bytes) { bytesMoved += bytes; }
+    // прочитано и записано на диск (внешняя сортировка)
+    public void addIo(long bytes) { ioBytes += bytes; }
+
+    // добавляет счётчики дочерней задачи; её глубина отсчитывается от текущей
+    public void merge(Metrics other) {
+        Metrics o = other.snapshot();
+        comparisons += o.comparisons;
+        swaps += o.swaps;
+        allocations += o.allocations;
+        passes += o.passes;
+        bytesMoved += o.bytesMoved;
+        ioBytes += o.ioBytes;
+        elapsedNanos += o.elapsedNanos;
+        int depth = recursionDepth + o.maxRecursionDepth;
+        if (depth > maxRecursionDepth) maxRecursionDepth = depth;
+    }
+
+    // счётчик для дочерней задачи того же вида; потом сливается через merge
+    public Metrics fork() { return new Metrics(); }
+
+    // неизменяемая копия итогов; для ConcurrentMetrics - сумма по всем потокам
+    public Metrics snapshot() {
+        Metrics s = new Metrics();
+        s.comparisons = comparisons;
+        s.swaps = swaps;
+        s.allocations = allocations;
+        s.passes = passes;
+        s.bytesMoved = bytesMoved;
+        s.ioBytes = ioBytes;
+        s.maxRecursionDepth = maxRecursionDepth;
+        s.elapsedNanos = elapsedNanos;
+        return s;
+    }
+
+    @Override public String toString() {
+        return "Metrics{comparisons=" + comparisons +
+                ", swaps=" + swaps +
+                ", allocations=" + allocations +
+                ", passes=" + passes +
+                ", bytesMoved=" + bytesMoved +
+                ", ioBytes=" + ioBytes +
+                ", maxRecursionDepth=" + maxRecursionDepth +
+                ", elapsedNanos=" + elapsedNanos + "}";
+    }
+
+    // phaseBegin/phaseEnd не переопределены: без счётчиков, но события JFR при записи остаются
+    private static final class Noop extends Metrics {
+        @Override public void startTimer() {}
+        @Override public void stopTimer() {}
+        @Override public void onCompare() {}
+        @Override public void onSwap() {}
+        @Override public void addSwaps(long n) {}
+        @Override public void onEnter() {}
+        @Override public void onExit() {}
+        @Override public void onEnter(int size) {}
+        @Override public void addAlloc(long units) {}
+        @Override public void onPass() {}
+        @Override public void addBytesMoved(long bytes) {}
+        @Override public void addIo(long bytes) {}
+        @Override public void merge(Metrics other) {}
+        @Override public Metrics fork() { return this; }
+        @Override public String toString() { return "Metrics{NOOP}"; }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package algo.common;
+
+import algo.select.DeterministicSelect;
+import algo.sort.MergeSort;
+import algo.sort.QuickSort;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @Test
+    void noopCountsNothing() {
+        int[] a = new Random(1).ints(5000, -1000, 1000).toArray();
+        int[] b = Arrays.copyOf(a, a.length);
+        MergeSort.sort(a, Metrics.NOOP);
+        QuickSort.sort(b, Metrics.NOOP);
+        DeterministicSelect.select(a, 10, Metrics.NOOP);
+        assertTrue(MergeSort.isSorted(a));
+        assertTrue(QuickSort.isSorted(b));
+        assertEquals(0, Metrics.NOOP.comparisons);
+        assertEquals(0, Metrics.NOOP.swaps);
+        assertEquals(0, Metrics.NOOP.allocations);
+        assertEquals(0, Metrics.NOOP.maxRecursionDepth);
+        assertSame(Metrics.NOOP, Metrics.NOOP.fork());
+    }
+
+    @Test
+    void countingMatchesAcrossRuns() {
+        int[] a = new Random(2).ints(3000, -1000, 1000).toArray();
+        Metrics m1 = new Metrics();
+        Metrics m2 = new Metrics();
+        MergeSort.sort(Arrays.copyOf(a, a.length), m1);
+        MergeSort.sort(Arrays.copyOf(a, a.length), m2);
+        assertTrue(m1.comparisons > 0);
+        assertEquals(m1.comparisons, m2.comparisons);
+        assertEquals(m1.swaps, m2.swaps);
+    }
+
+    @Test
+    void mergeStacksDepth() {
+        Metrics parent = new Metrics();
+        Metrics child = parent.fork();
+        child.onEnter();
+        child.onEnter();
+        child.onCompare();
+        child.addSwaps(3);
+        child.onExit();
+        child.onExit();
+        parent.onEnter();
+        parent.merge(child);
+        parent.onExit();
+        assertEquals(1, parent.comparisons);
+        assertEquals(3, parent.swaps);
+        assertEquals(3, parent.maxRecursionDepth);
+    }
+
+    @Test
+    void concurrentSumsAllThreads() throws InterruptedException {
+        int threads = 8;
+        ConcurrentMetrics shared = new ConcurrentMetrics();
+        Metrics[] own = new Metrics[threads];
+        Thread[] ts = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            own[t] = new Metrics();
+            ts[t] = new Thread(() -> {
+                int[] a = new Random(seed).ints(20_000, -1000, 1000).toArray();
+                MergeSort.sort(Arrays.copyOf(a, a.length), shared);
+                MergeSort.sort(a, own[seed]);
+            });
+            ts[t].start();
+        }
+        for (Thread t : ts) t.join();
+
+        Metrics expected = new Metrics();
+        for (Metrics m : own) expected.merge(m);
+        Metrics got = shared.snapshot();
+        assertEquals(expected.comparisons, got.comparisons);
+        assertEquals(expected.swaps, got.swaps);
+        assertEquals(expected.allocations, got.allocations);
+        assertEquals(expected.maxRecursionDepth, got.maxRecursionDepth);
+        assertTrue(got.elapsedNanos > 0);
+
+        // чтение полей, как в построчных отчётах, после fold() видит те же итоги
+        Metrics asPlain = shared.fold();
+        assertEquals(expected.comparisons, asPlain.comparisons);
+        assertEquals(expected.swaps, asPlain.swaps);
+        assertEquals(expected.allocations, asPlain.allocations);
+        assertEquals(expected.maxRecursionDepth, asPlain.maxRecursionDepth);
+        assertEquals(got.elapsedNanos, asPlain.elapsedNanos);
+    }
+
+    // глубина для phaseEnd и гистограмм берётся из ячейки своего потока
+    @Test
+    void concurrentDepthIsPerThread() throws InterruptedException {
+        ConcurrentMetrics shared = new ConcurrentMetrics();
+        shared.onEnter();
+        shared.onEnter(100);
+        int[] other = new int[1];
+        Thread t = new Thread(() -> {
+            shared.onEnter();
+            other[0] = shared.depth();
+        });
+        t.start();
+        t.join();
+        assertEquals(2, shared.depth());
+        assertEquals(1, other[0]);
+        shared.onExit();
+        assertEquals(1, shared.depth());
+    }
+
+    @Test
+    void concurrentWithParallelSort() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ConcurrentMetrics shared = new ConcurrentMetrics();
+            Metrics plain = new Metrics();
+            int[] a = new Random(3).ints(100_000).toArray();
+            MergeSort.parallelSort(Arrays.copyOf(a, a.length), shared, pool);
+            MergeSort.parallelSort(a, plain, pool);
+            Metrics got = shared.snapshot();
+            assertEquals(plain.comparisons, got.comparisons);
+            assertEquals(plain.comparisons, shared.comparisons);
+            assertEquals(plain.swaps, got.swaps);
+            assertEquals(plain.maxRecursionDepth, got.maxRecursionDepth);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+package algo.sort;
+
+import algo.common.Metrics;
+
+import java.util.Arrays;
+
+public final class PartialSort {
+
+    private PartialSort() {}
+
+    // После вызова a[0, k) - k наименьших по возрастанию, порядок остальных не определён.
+    public static void partialSort(int[] a, int k, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (k < 0 || k > a.length) throw new IllegalArgumentException("k out of range");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        if (k > 0) QuickSort.partialSort(a, 0, a.length, k, m);
+        m.stopTimer();
+    }
+
+    // k наибольших по убыванию, a не меняется. При копировании ключи инвертируются (~x),
+    // так что k наибольших становятся k наименьшими и хватает одной partialSort.
+    public static int[] topK(int[] a, int k, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (k < 0 || k > a.length) throw new IllegalArgumentException("k out of range");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        int[] work = new int[a.length];
+        m.addAlloc(work.length);
+        for (int i = 0; i < a.length; i++) work[i] = ~a[i];
+        if (k > 0) QuickSort.partialSort(work, 0, work.length, k, m);
+        int[] res = Arrays.copyOf(work, k);
+        m.addAlloc(k);
+        for (int i = 0; i < k; i++) res[i] = ~res[i];
+        m.stopTimer();
+        return res;
+    }
+
+    public static void main(String[] args) {
+        int[] a = {7, 1, 9, 3, 3, 5, 8, 2, 6, 4};
+        Metrics m = new Metrics();
+        System.out.println("top3=" + Arrays.toString(topK(a, 3, m)));
+        partialSort(a, 4, m);
+        System.out.println("partial=" + Arrays.toString(a));
+        System.out.println(m);
+    }
+}
\ No newline at end of file
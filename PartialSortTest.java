@@ -0,0 +1,85 @@
+package algo.sort;
+
+import algo.common.Inputs;
+import algo.common.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartialSortTest {
+
+    @Test
+    void prefixMatchesFullSort() {
+        Random rnd = new Random(17);
+        for (Inputs.Distribution d : Inputs.Distribution.values()) {
+            for (int n : new int[]{0, 1, 10, 1000, 100_000}) {
+                int[] a = Inputs.ints(d, n, rnd.nextLong());
+                int[] b = Arrays.copyOf(a, n);
+                Arrays.sort(b);
+                for (int k : new int[]{0, Math.min(n, 1), n / 10, n}) {
+                    int[] c = Arrays.copyOf(a, n);
+                    PartialSort.partialSort(c, k, new Metrics());
+                    assertArrayEquals(Arrays.copyOf(b, k), Arrays.copyOf(c, k), d + " n=" + n + " k=" + k);
+                    Arrays.sort(c);
+                    assertArrayEquals(b, c, "not a permutation");
+                }
+            }
+        }
+    }
+
+    @Test
+    void cheaperThanFullSort() {
+        int[] a = new Random(3).ints(1_000_000).toArray();
+        Metrics full = new Metrics();
+        Metrics partial = new Metrics();
+        QuickSort.sort(Arrays.copyOf(a, a.length), full);
+        PartialSort.partialSort(Arrays.copyOf(a, a.length), 100, partial);
+        assertTrue(4 * partial.comparisons < full.comparisons, partial.comparisons + " vs " + full.comparisons);
+    }
+
+    @Test
+    void topKLargestDescending() {
+        int[] a = new Random(5).ints(50_000).toArray();
+        a[7] = Integer.MIN_VALUE;
+        a[8] = Integer.MAX_VALUE;
+        int[] before = Arrays.copyOf(a, a.length);
+        int[] b = Arrays.copyOf(a, a.length);
+        Arrays.sort(b);
+        int[] top = PartialSort.topK(a, 20, null);
+        for (int i = 0; i < 20; i++) assertEquals(b[b.length - 1 - i], top[i]);
+        assertArrayEquals(before, a);
+        assertEquals(a.length, PartialSort.topK(a, a.length, null).length);
+    }
+
+    @Test
+    void streamingHeap() {
+        int[] a = Inputs.ints(Inputs.Distribution.MANY_DUPLICATES, 100_000, 9);
+        int[] b = Arrays.copyOf(a, a.length);
+        Arrays.sort(b);
+        Metrics hm = new Metrics();
+        TopK hi = TopK.largest(50, hm);
+        TopK lo = TopK.smallest(50, null);
+        for (int i = 0; i < a.length; i += 1000) {
+            hi.addAll(a, i, i + 1000);
+            lo.addAll(a, i, i + 1000);
+        }
+        // чтение не трогает таймер: время замеряет тот, кто отдал Metrics
+        hm.elapsedNanos = 12345;
+        int[] top = hi.values(), bottom = lo.values();
+        assertEquals(12345, hm.elapsedNanos);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(b[b.length - 1 - i], top[i]);
+            assertEquals(b[i], bottom[i]);
+        }
+        assertEquals(b[b.length - 50], hi.threshold());
+        assertEquals(b[49], lo.threshold());
+
+        TopK few = TopK.smallest(10, null);
+        few.add(3);
+        few.add(Integer.MIN_VALUE);
+        assertArrayEquals(new int[]{Integer.MIN_VALUE, 3}, few.values());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,15 @@
+package algo.common;
+
+// Участки горячего пути, которые алгоритмы отмечают через Metrics.phaseBegin/phaseEnd.
+// Время фазы включает вложенные фазы (например, медиана медиан включает рекурсивный выбор).
+public enum Phase {
+    QUICKSORT_PARTITION,
+    QUICKSORT_INSERTION,
+    MERGESORT_MERGE,
+    MERGESORT_INSERTION,
+    SELECT_MEDIAN_OF_MEDIANS,
+    SELECT_PARTITION,
+    CLOSEST_SORT,
+    CLOSEST_BASE,
+    CLOSEST_STRIP
+}
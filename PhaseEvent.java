@@ -0,0 +1,47 @@
+package algo.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Событие JFR на каждую фазу. Пока запись не идёт, isEnabled() - чтение флага класса события,
+// а сам объект JIT убирает escape-анализом, так что в горячем пути остаётся одна проверка.
+// Длительность хранится в поле elapsed: начало фазы известно только как System.nanoTime().
+@Name("algo.Phase")
+@Label("Algorithm Phase")
+@Category("Algorithms")
+@Description("One hot-path phase of a divide-and-conquer algorithm")
+@StackTrace(false)
+final class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Subproblem Size")
+    int size;
+
+    @Label("Recursion Depth")
+    int depth;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    // отметка начала для phaseBegin; 0 - запись выключена, phaseEnd ничего не пишет
+    static long start() {
+        return new PhaseEvent().isEnabled() ? System.nanoTime() : 0;
+    }
+
+    static void emit(Phase p, long startNanos, long endNanos, int size, int depth) {
+        PhaseEvent e = new PhaseEvent();
+        if (!e.isEnabled()) return;
+        e.phase = p.name();
+        e.size = size;
+        e.depth = depth;
+        e.elapsed = endNanos - startNanos;
+        e.commit();
+    }
+}
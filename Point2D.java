@@ -1,5 +1,5 @@
-package algo.pair;
-
-public record Point2D(double x, double y) {
-    @Override public String toString() { return "(" + x + "," + y + ")"; }
-}
+package algo.pair;
+
+public record Point2D(double x, double y) {
+    @Override public String toString() { return "(" + x + "," + y + ")"; }
+}
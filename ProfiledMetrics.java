@@ -0,0 +1,94 @@
+package algo.common;
+
+import java.util.Arrays;
+
+// Metrics с таймерами по фазам и гистограммой размеров подзадач по глубине рекурсии:
+// видно, куда уходит время (разбиение или вставки, полоса или рекурсия) и на каких размерах
+// реально работают отсечки вроде INSERTION_CUTOFF. Два System.nanoTime на фазу заметны
+// на мелких листьях, поэтому это отдельный класс, а не поведение Metrics по умолчанию.
+// Не потокобезопасен, как и Metrics: параллельные задачи берут fork() и сливаются через merge.
+public final class ProfiledMetrics extends Metrics {
+    public static final int MAX_DEPTH = 64;
+    // корзина b - размеры [2^b, 2^(b+1))
+    public static final int BUCKETS = 32;
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long[] phaseCount = new long[PHASES.length];
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final long[] phaseElements = new long[PHASES.length];
+    private final long[][] sizes = new long[MAX_DEPTH][BUCKETS];
+
+    @Override public void onEnter(int size) {
+        onEnter();
+        sizes[Math.min(depth(), MAX_DEPTH - 1)][bucket(size)]++;
+    }
+
+    @Override public long phaseBegin(Phase p) { return System.nanoTime(); }
+
+    @Override public void phaseEnd(Phase p, long start, int size) {
+        long now = System.nanoTime();
+        int i = p.ordinal();
+        phaseCount[i]++;
+        phaseNanos[i] += now - start;
+        phaseElements[i] += size;
+        PhaseEvent.emit(p, start, now, size, depth());
+    }
+
+    @Override public Metrics fork() { return new ProfiledMetrics(); }
+
+    // глубины дочерней задачи сдвигаются на текущую глубину, как и maxRecursionDepth
+    @Override public void merge(Metrics other) {
+        int base = depth();
+        super.merge(other);
+        if (!(other instanceof ProfiledMetrics o)) return;
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseCount[i] += o.phaseCount[i];
+            phaseNanos[i] += o.phaseNanos[i];
+            phaseElements[i] += o.phaseElements[i];
+        }
+        for (int d = 0; d < MAX_DEPTH; d++) {
+            long[] dst = sizes[Math.min(base + d, MAX_DEPTH - 1)];
+            for (int b = 0; b < BUCKETS; b++) dst[b] += o.sizes[d][b];
+        }
+    }
+
+    public long count(Phase p) { return phaseCount[p.ordinal()]; }
+
+    public long nanos(Phase p) { return phaseNanos[p.ordinal()]; }
+
+    // сумма размеров подзадач, на которых выполнялась фаза
+    public long elements(Phase p) { return phaseElements[p.ordinal()]; }
+
+    // копия [глубина][корзина]; строка d - подзадачи, в которые вошли на глубине d (корень - 1)
+    public long[][] sizeHistogram() {
+        long[][] res = new long[MAX_DEPTH][];
+        for (int d = 0; d < MAX_DEPTH; d++) res[d] = Arrays.copyOf(sizes[d], BUCKETS);
+        return res;
+    }
+
+    public static int bucket(int size) {
+        return size <= 1 ? 0 : 31 - Integer.numberOfLeadingZeros(size);
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder(super.toString()).append('\n');
+        sb.append(String.format("%-26s %12s %14s %14s %10s%n", "phase", "count", "nanos", "elements", "ns/elem"));
+        for (Phase p : PHASES) {
+            int i = p.ordinal();
+            if (phaseCount[i] == 0) continue;
+            double perElem = phaseElements[i] == 0 ? 0 : (double) phaseNanos[i] / phaseElements[i];
+            sb.append(String.format("%-26s %12d %14d %14d %10.2f%n",
+                    p, phaseCount[i], phaseNanos[i], phaseElements[i], perElem));
+        }
+        sb.append("subproblem sizes by depth (bucket 2^b: count)\n");
+        for (int d = 0; d < MAX_DEPTH; d++) {
+            StringBuilder row = new StringBuilder();
+            for (int b = 0; b < BUCKETS; b++) {
+                if (sizes[d][b] != 0) row.append(" 2^").append(b).append(':').append(sizes[d][b]);
+            }
+            if (row.length() > 0) sb.append(String.format("%3d", d)).append(row).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package algo.common;
+
+import algo.pair.ClosestPair;
+import algo.select.DeterministicSelect;
+import algo.sort.MergeSort;
+import algo.sort.QuickSort;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProfiledMetricsTest {
+
+    @Test
+    void quickSortPhasesAndHistogram() {
+        int n = 50_000;
+        int[] a = new Random(1).ints(n, -1_000_000, 1_000_000).toArray();
+        ProfiledMetrics m = new ProfiledMetrics();
+        QuickSort.sort(a, m);
+        assertTrue(QuickSort.isSorted(a));
+        assertTrue(m.count(Phase.QUICKSORT_PARTITION) > 0);
+        assertTrue(m.count(Phase.QUICKSORT_INSERTION) > 0);
+        assertTrue(m.nanos(Phase.QUICKSORT_PARTITION) > 0);
+        // листья вставками покрывают каждый элемент не больше одного раза
+        assertTrue(m.elements(Phase.QUICKSORT_INSERTION) <= n);
+        assertEquals(0, m.count(Phase.MERGESORT_MERGE));
+
+        long[][] h = m.sizeHistogram();
+        assertEquals(0, Arrays.stream(h[0]).sum());
+        // хвостовой цикл снова входит на глубине 1, уже с остатком отрезка
+        assertTrue(h[1][ProfiledMetrics.bucket(n)] >= 1);
+        assertTrue(Arrays.stream(h[2]).sum() > 0);
+        assertTrue(m.report().contains("QUICKSORT_PARTITION"));
+    }
+
+    @Test
+    void parallelHistogramMatchesSequential() {
+        int[] a = new Random(2).ints(100_000, -1000, 1000).toArray();
+        ProfiledMetrics seq = new ProfiledMetrics();
+        MergeSort.sort(Arrays.copyOf(a, a.length), seq);
+        ProfiledMetrics par = new ProfiledMetrics();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            MergeSort.parallelSort(Arrays.copyOf(a, a.length), par, pool);
+        } finally {
+            pool.shutdown();
+        }
+        // дерево рекурсии то же, глубины дочерних задач сдвинуты при merge
+        assertArrayEquals(seq.sizeHistogram(), par.sizeHistogram());
+        assertEquals(seq.maxRecursionDepth, par.maxRecursionDepth);
+        assertEquals(seq.count(Phase.MERGESORT_INSERTION), par.count(Phase.MERGESORT_INSERTION));
+        assertTrue(par.count(Phase.MERGESORT_MERGE) > 0);
+    }
+
+    @Test
+    void selectAndClosestPhases() {
+        int[] a = new Random(3).ints(20_000).toArray();
+        ProfiledMetrics m = new ProfiledMetrics();
+        DeterministicSelect.select(a, 777, m);
+        assertTrue(m.count(Phase.SELECT_MEDIAN_OF_MEDIANS) > 0);
+        assertTrue(m.count(Phase.SELECT_PARTITION) >= m.count(Phase.SELECT_MEDIAN_OF_MEDIANS));
+
+        Random rnd = new Random(4);
+        double[] xs = new double[5000], ys = new double[5000];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = rnd.nextDouble();
+            ys[i] = rnd.nextDouble();
+        }
+        ProfiledMetrics p = new ProfiledMetrics();
+        ClosestPair.closest(xs, ys, p);
+        assertEquals(1, p.count(Phase.CLOSEST_SORT));
+        assertEquals(xs.length, p.elements(Phase.CLOSEST_BASE));
+        assertEquals(p.count(Phase.CLOSEST_BASE) - 1, p.count(Phase.CLOSEST_STRIP));
+    }
+
+    @Test
+    void noRecordingNoPhaseStart() {
+        assertEquals(0, Metrics.NOOP.phaseBegin(Phase.QUICKSORT_PARTITION));
+        assertEquals(0, new Metrics().phaseBegin(Phase.MERGESORT_MERGE));
+    }
+
+    @Test
+    void jfrEventsWithNoopMetrics() throws IOException {
+        int n = 10_000;
+        int[] a = new Random(5).ints(n).toArray();
+        Path f = Files.createTempFile("phases", ".jfr");
+        try (Recording r = new Recording()) {
+            r.enable("algo.Phase");
+            r.start();
+            QuickSort.sort(a, Metrics.NOOP);
+            r.stop();
+            r.dump(f);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(f);
+            assertTrue(events.stream().anyMatch(e -> e.getString("phase").equals("QUICKSORT_PARTITION")
+                    && e.getInt("size") == n));
+            assertTrue(events.stream().anyMatch(e -> e.getString("phase").equals("QUICKSORT_INSERTION")));
+        } finally {
+            Files.deleteIfExists(f);
+        }
+        assertTrue(QuickSort.isSorted(a));
+    }
+}
@@ -0,0 +1,251 @@
+package algo.select;
+
+import algo.common.Metrics;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Потоковые квантили в ограниченной памяти: KLL-скетч из компакторов.
+ * Уровень h хранит элементы веса 2^h; заполненный уровень сортируется, и каждый второй
+ * элемент (со случайным сдвигом) уходит на уровень выше. Ёмкости уровней убывают вниз
+ * в 2/3 раза, поэтому всего хранится O(k) значений независимо от длины потока,
+ * а ошибка ранга порядка 1.7 / k.
+ * Пока сжатий не было, ответы точные (через DeterministicSelect).
+ * Не потокобезопасен: каждому потоку свой скетч, в конце merge.
+ */
+public final class QuantileSketch {
+    public static final int DEFAULT_K = 200;
+    private static final int MIN_CAPACITY = 8;
+    private static final double DECAY = 2.0 / 3;
+
+    private final int k;
+    private final Metrics m;
+    private final SplittableRandom rnd = new SplittableRandom();
+    private int[][] levels = new int[1][];
+    private int[] sizes = new int[1];
+    private long n;
+    // крайние значения храним точно: сжатие может выбросить их из уровней
+    private int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+
+    public QuantileSketch() {
+        this(DEFAULT_K, null);
+    }
+
+    public QuantileSketch(int k, Metrics m) {
+        if (k < MIN_CAPACITY || k > 1 << 16) throw new IllegalArgumentException("k out of range: " + k);
+        this.k = k;
+        this.m = m == null ? Metrics.NOOP : m;
+        levels[0] = new int[k];
+        this.m.addAlloc(k);
+    }
+
+    // k под заданную нормированную ошибку ранга, например 0.01 -> k = 170
+    public static QuantileSketch forRankError(double eps, Metrics m) {
+        if (!(eps > 0 && eps < 1)) throw new IllegalArgumentException("eps must be in (0, 1)");
+        return new QuantileSketch((int) Math.max(MIN_CAPACITY, Math.ceil(1.7 / eps)), m);
+    }
+
+    public int k() { return k; }
+
+    public long count() { return n; }
+
+    public boolean isEmpty() { return n == 0; }
+
+    // сколько значений хранится сейчас
+    public int retained() {
+        int r = 0;
+        for (int size : sizes) r += size;
+        return r;
+    }
+
+    // длина массивов уровней: сколько памяти держит скетч, а не сколько в нём значений
+    int footprint() {
+        int f = 0;
+        for (int[] level : levels) f += level.length;
+        return f;
+    }
+
+    public void add(int x) {
+        if (sizes[0] == levels[0].length) compress();
+        levels[0][sizes[0]++] = x;
+        n++;
+        if (x < min) min = x;
+        if (x > max) max = x;
+    }
+
+    public void addAll(int[] a) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        addAll(a, 0, a.length);
+    }
+
+    // пачка копируется кусками до заполнения нулевого уровня
+    public void addAll(int[] a, int from, int to) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (from < 0 || to > a.length || from > to) throw new IllegalArgumentException("bad range");
+        while (from < to) {
+            if (sizes[0] == levels[0].length) compress();
+            int len = Math.min(to - from, levels[0].length - sizes[0]);
+            System.arraycopy(a, from, levels[0], sizes[0], len);
+            for (int i = from; i < from + len; i++) {
+                int x = a[i];
+                if (x < min) min = x;
+                if (x > max) max = x;
+            }
+            sizes[0] += len;
+            n += len;
+            from += len;
+        }
+    }
+
+    /** Сливает other в этот скетч; other не меняется. k должны совпадать. */
+    public void merge(QuantileSketch other) {
+        if (other == null) throw new IllegalArgumentException("other is null");
+        if (other.k != k) throw new IllegalArgumentException("k mismatch: " + k + " vs " + other.k);
+        if (other == this) throw new IllegalArgumentException("cannot merge into itself");
+        while (levels.length < other.levels.length) grow();
+        for (int h = 0; h < other.levels.length; h++) {
+            append(h, other.levels[h], 0, other.sizes[h]);
+        }
+        n += other.n;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] >= capacity(h)) compactFrom(h);
+        }
+    }
+
+    /** q-квантиль: значение ранга floor(q * (n - 1)) в отсортированном потоке. */
+    public int quantile(double q) {
+        return quantiles(new double[]{q})[0];
+    }
+
+    public int[] quantiles(double[] qs) {
+        if (qs == null) throw new IllegalArgumentException("qs is null");
+        if (n == 0) throw new IllegalStateException("empty sketch");
+        long[] ranks = new long[qs.length];
+        for (int i = 0; i < qs.length; i++) {
+            double q = qs[i];
+            if (!(q >= 0 && q <= 1)) throw new IllegalArgumentException("q must be in [0, 1]: " + q);
+            ranks[i] = (long) (q * (n - 1));
+        }
+        if (levels.length == 1) {
+            // сжатий не было - весь поток на нулевом уровне, ответ точный
+            int[] ks = new int[ranks.length];
+            for (int i = 0; i < ks.length; i++) ks[i] = (int) ranks[i];
+            int[] copy = Arrays.copyOf(levels[0], sizes[0]);
+            m.addAlloc(copy.length);
+            return DeterministicSelect.multiSelectRange(copy, ks, m);
+        }
+
+        // (значение, уровень) упакованы в long так, что порядок long совпадает с порядком значений
+        long[] items = new long[retained()];
+        m.addAlloc(items.length);
+        int c = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) items[c++] = ((long) levels[h][i] << 32) | h;
+        }
+        Arrays.sort(items);
+        int[] res = new int[qs.length];
+        for (int i = 0; i < qs.length; i++) {
+            if (ranks[i] == 0) { res[i] = min; continue; }
+            if (ranks[i] == n - 1) { res[i] = max; continue; }
+            long weight = 0;
+            int j = 0;
+            while (j < items.length - 1) {
+                weight += 1L << (int) items[j];
+                if (weight > ranks[i]) break;
+                j++;
+            }
+            res[i] = (int) (items[j] >> 32);
+        }
+        return res;
+    }
+
+    /** Приближённое число элементов потока, меньших x. */
+    public long rank(int x) {
+        long r = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                m.onCompare();
+                if (levels[h][i] < x) r += 1L << h;
+            }
+        }
+        return r;
+    }
+
+    // ёмкость уровня h при текущей высоте: верхний k, ниже каждый в 2/3 раза меньше
+    private int capacity(int h) {
+        int depth = levels.length - 1 - h;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(DECAY, depth)));
+    }
+
+    private void compress() {
+        compactFrom(0);
+    }
+
+    // сжимает уровень h и дальше вверх, пока уровни не уложатся в ёмкость
+    private void compactFrom(int h) {
+        for (; h < levels.length; h++) {
+            if (sizes[h] < capacity(h)) {
+                if (h > 0) return;
+                continue;
+            }
+            if (h == levels.length - 1) grow();
+            int[] level = levels[h];
+            int size = sizes[h];
+            DeterministicSelect.sortRange(level, 0, size, m);
+            // при нечётном размере первый элемент остаётся на месте
+            int start = size & 1;
+            int offset = rnd.nextBoolean() ? 1 : 0;
+            int half = (size - start) >>> 1;
+            int[] up = ensureRoom(h + 1, half);
+            int dst = sizes[h + 1];
+            for (int i = start + offset; i < size; i += 2) up[dst++] = level[i];
+            sizes[h + 1] = dst;
+            sizes[h] = start;
+            fit(h);
+            m.onPass();
+            m.addBytesMoved(4L * half);
+        }
+    }
+
+    // новый верхний уровень получает ёмкость k, нижние ужимаются в fit при следующем сжатии
+    private void grow() {
+        int h = levels.length;
+        levels = Arrays.copyOf(levels, h + 1);
+        sizes = Arrays.copyOf(sizes, h + 1);
+        levels[h] = new int[k];
+        m.addAlloc(k);
+    }
+
+    // После сжатия на уровне не больше одного элемента, а ёмкость с ростом высоты только
+    // убывает: массив ужимается до неё, и всего хранится O(k), а не k на каждый уровень.
+    private void fit(int h) {
+        int cap = capacity(h);
+        if (levels[h].length > cap) {
+            levels[h] = Arrays.copyOf(levels[h], cap);
+            m.addAlloc(cap);
+        }
+    }
+
+    private void append(int h, int[] src, int from, int len) {
+        int[] dst = ensureRoom(h, len);
+        System.arraycopy(src, from, dst, sizes[h], len);
+        sizes[h] += len;
+    }
+
+    private int[] ensureRoom(int h, int extra) {
+        int need = sizes[h] + extra;
+        if (need > levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], Math.max(need, levels[h].length + (levels[h].length >> 1)));
+            m.addAlloc(levels[h].length);
+        }
+        return levels[h];
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch{k=" + k + ", n=" + n + ", levels=" + levels.length + ", retained=" + retained() + '}';
+    }
+}
\ No newline at end of file
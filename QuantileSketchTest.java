@@ -0,0 +1,115 @@
+package algo.select;
+
+import algo.common.Inputs;
+import algo.common.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuantileSketchTest {
+    private static final double[] QS = {0, 0.01, 0.25, 0.5, 0.9, 0.95, 0.99, 0.999, 1};
+
+    // ошибка в рангах: где ответ sketch стоит в отсортированном потоке относительно точного ранга
+    private static double rankError(int[] sorted, double q, int got) {
+        long want = (long) (q * (sorted.length - 1));
+        int lo = lowerBound(sorted, got), hi = lowerBound(sorted, got + 1L) - 1;
+        long err = want < lo ? lo - want : want > hi ? want - hi : 0;
+        return (double) err / sorted.length;
+    }
+
+    private static int lowerBound(int[] a, long x) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < x) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    @Test
+    void exactWhileSmall() {
+        QuantileSketch s = new QuantileSketch();
+        int[] a = new Random(1).ints(150, -50, 50).toArray();
+        for (int x : a) s.add(x);
+        int[] b = Arrays.copyOf(a, a.length);
+        Arrays.sort(b);
+        int[] got = s.quantiles(QS);
+        for (int i = 0; i < QS.length; i++) assertEquals(b[(int) (QS[i] * (b.length - 1))], got[i]);
+    }
+
+    @Test
+    void boundedMemoryAndError() {
+        for (Inputs.Distribution d : Inputs.Distribution.values()) {
+            int n = 1_000_000;
+            int[] a = Inputs.ints(d, n, 99);
+            QuantileSketch s = new QuantileSketch(200, new Metrics());
+            for (int i = 0; i < n; i += 1000) s.addAll(a, i, i + 1000);
+            assertEquals(n, s.count());
+            assertTrue(s.retained() < 5 * 200, "retained " + s.retained());
+            int[] b = Arrays.copyOf(a, n);
+            Arrays.sort(b);
+            int[] got = s.quantiles(QS);
+            for (int i = 0; i < QS.length; i++) {
+                assertTrue(rankError(b, QS[i], got[i]) < 0.02, d + " q=" + QS[i]);
+            }
+            assertEquals(b[0], got[0]);
+            assertEquals(b[n - 1], got[QS.length - 1]);
+        }
+    }
+
+    // уровни ужимаются до своей ёмкости, а сжатия не трогают таймер вызывающего
+    @Test
+    void footprintIsLinearInK() {
+        int[] starts = new int[1];
+        Metrics m = new Metrics() {
+            @Override public void startTimer() {
+                starts[0]++;
+                super.startTimer();
+            }
+        };
+        QuantileSketch s = new QuantileSketch(200, m);
+        m.startTimer();
+        new Random(3).ints(2_000_000).forEach(s::add);
+        s.quantile(0.5);
+        m.stopTimer();
+        assertEquals(1, starts[0]);
+        assertTrue(s.footprint() < 5 * 200, "footprint " + s.footprint());
+    }
+
+    @Test
+    void mergeFromPartitions() throws InterruptedException {
+        int parts = 4, n = 400_000;
+        int[] a = new Random(2).ints(n).toArray();
+        QuantileSketch[] sketches = new QuantileSketch[parts];
+        Thread[] threads = new Thread[parts];
+        for (int p = 0; p < parts; p++) {
+            int from = p * (n / parts), to = from + n / parts;
+            QuantileSketch s = sketches[p] = new QuantileSketch();
+            threads[p] = new Thread(() -> { for (int i = from; i < to; i++) s.add(a[i]); });
+            threads[p].start();
+        }
+        for (Thread t : threads) t.join();
+        QuantileSketch total = new QuantileSketch();
+        for (QuantileSketch s : sketches) total.merge(s);
+        assertEquals(n, total.count());
+        assertTrue(total.retained() < 5 * QuantileSketch.DEFAULT_K);
+        int[] b = Arrays.copyOf(a, n);
+        Arrays.sort(b);
+        for (double q : QS) assertTrue(rankError(b, q, total.quantile(q)) < 0.02, "q=" + q);
+        long r = total.rank(b[n / 2]);
+        assertTrue(Math.abs(r - n / 2) < 0.02 * n, "rank " + r);
+    }
+
+    @Test
+    void rejectsBadInput() {
+        QuantileSketch s = new QuantileSketch();
+        assertThrows(IllegalStateException.class, () -> s.quantile(0.5));
+        s.add(1);
+        assertThrows(IllegalArgumentException.class, () -> s.quantile(1.5));
+        assertThrows(IllegalArgumentException.class, () -> s.merge(new QuantileSketch(100, null)));
+        assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(2, null));
+    }
+}
\ No newline at end of file
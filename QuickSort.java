@@ -1,75 +1,429 @@
-package algo.sort;
-
-import algo.common.Metrics;
-
-import java.util.Arrays;
-import java.util.Random;
-
-public final class QuickSort {
-    private static final Random rnd = new Random();
-
-    private QuickSort() {}
-
-    public static void sort(int[] a, Metrics m) {
-        if (a == null) throw new IllegalArgumentException("array is null");
-        if (m == null) m = new Metrics();
-        m.startTimer();
-        quickSortIter(a, 0, a.length, m);
-        m.stopTimer();
-    }
-
-    private static void quickSortIter(int[] a, int lo, int hi, Metrics m) {
-        while (hi - lo > 1) {
-            m.onEnter();
-            int p = partition(a, lo, hi, m);
-            int leftSize = p - lo;
-            int rightSize = hi - (p + 1);
-
-            // рекурсируем в меньшую часть
-            if (leftSize < rightSize) {
-                if (leftSize > 1) quickSortIter(a, lo, p, m);
-                lo = p + 1; // хвост -> цикл
-            } else {
-                if (rightSize > 1) quickSortIter(a, p + 1, hi, m);
-                hi = p; // хвост -> цикл
-            }
-            m.onExit();
-        }
-    }
-
-    private static int partition(int[] a, int lo, int hi, Metrics m) {
-        int pivotIndex = lo + rnd.nextInt(hi - lo);
-        int pivot = a[pivotIndex];
-        swap(a, pivotIndex, hi - 1, m);
-        int i = lo;
-        for (int j = lo; j < hi - 1; j++) {
-            m.comparisons++;
-            if (a[j] <= pivot) {
-                swap(a, i, j, m);
-                i++;
-            }
-        }
-        swap(a, i, hi - 1, m);
-        return i;
-    }
-
-    private static void swap(int[] a, int i, int j, Metrics m) {
-        int tmp = a[i];
-        a[i] = a[j];
-        a[j] = tmp;
-        m.swaps++;
-    }
-
-    public static boolean isSorted(int[] a) {
-        for (int i = 1; i < a.length; i++) if (a[i-1] > a[i]) return false;
-        return true;
-    }
-
-    public static void main(String[] args) {
-        int[] demo = {5,4,3,2,1,7,6,9,8,0};
-        Metrics m = new Metrics();
-        sort(demo, m);
-        System.out.println(Arrays.toString(demo));
-        System.out.println(m);
-    }
+package algo.sort;
+
+import algo.common.Metrics;
+import algo.common.Phase;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class QuickSort {
+    private static final int INSERTION_CUTOFF = 16;
+    private static final int NINTHER_THRESHOLD = 128;
+    private static final int PARALLEL_CUTOFF = 1 << 13;
+    private static final int PARALLEL_PARTITION_THRESHOLD = 1 << 20;
+    private static final int PARTITION_BLOCK = 1 << 16;
+
+    private QuickSort() {}
+
+    public static void sort(int[] a, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        quickSortIter(a, 0, a.length, depthLimit(a.length), m);
+        m.stopTimer();
+    }
+
+    // сортирует только [from, to)
+    public static void sort(int[] a, int from, int to, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (from < 0 || to > a.length || from > to) throw new IllegalArgumentException("bad range");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        sortRange(a, from, to, m);
+        m.stopTimer();
+    }
+
+    // то же без таймера: для вызова изнутри другого алгоритма, который засекает время сам
+    static void sortRange(int[] a, int from, int to, Metrics m) {
+        quickSortIter(a, from, to, depthLimit(to - from), m);
+    }
+
+    public static void parallelSort(int[] a, Metrics m) {
+        parallelSort(a, m, ForkJoinPool.commonPool());
+    }
+
+    // in-place, без буфера размера n: стороны разбиения сортируются параллельными задачами,
+    // а самые большие отрезки ещё и разбиваются параллельно (parallelPartition)
+    public static void parallelSort(int[] a, Metrics m, ForkJoinPool pool) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (pool == null) throw new IllegalArgumentException("pool is null");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        SortTask root = new SortTask(a, 0, a.length, depthLimit(a.length), m.fork());
+        pool.invoke(root);
+        m.merge(root.m);
+        m.stopTimer();
+    }
+
+    // как в introsort: после 2*log2(n) неудачных разбиений переходим на heapsort
+    private static int depthLimit(int n) {
+        return n > 1 ? 2 * (31 - Integer.numberOfLeadingZeros(n)) : 0;
+    }
+
+    private static void quickSortIter(int[] a, int lo, int hi, int depth, Metrics m) {
+        while (hi - lo > INSERTION_CUTOFF) {
+            if (depth-- == 0) {
+                heapSort(a, lo, hi, m);
+                return;
+            }
+            m.onEnter(hi - lo);
+            long bounds = partition(a, lo, hi, m);
+            int lt = (int) (bounds >>> 32);
+            int gt = (int) bounds;
+            int leftSize = lt - lo;
+            int rightSize = hi - gt;
+
+            // рекурсируем в меньшую часть
+            if (leftSize < rightSize) {
+                if (leftSize > 1) quickSortIter(a, lo, lt, depth, m);
+                lo = gt; // хвост -> цикл
+            } else {
+                if (rightSize > 1) quickSortIter(a, gt, hi, depth, m);
+                hi = lt; // хвост -> цикл
+            }
+            m.onExit();
+        }
+        insertionSort(a, lo, hi, m);
+    }
+
+    // Частичная быстрая сортировка: упорядочивает только префикс [lo, limit), остальное
+    // лишь отделяется разбиением. Правая часть, целиком лежащая за limit, не трогается,
+    // левая, целиком лежащая в префиксе, сортируется полностью: O(n + k log k) в среднем.
+    static void partialSort(int[] a, int lo, int hi, int limit, Metrics m) {
+        int depth = depthLimit(hi - lo);
+        while (hi - lo > INSERTION_CUTOFF) {
+            if (depth-- == 0) {
+                heapSort(a, lo, hi, m);
+                return;
+            }
+            m.onEnter(hi - lo);
+            long bounds = partition(a, lo, hi, m);
+            int lt = (int) (bounds >>> 32);
+            int gt = (int) bounds;
+            if (lt >= limit) {
+                hi = lt;
+            } else {
+                if (lt - lo > 1) quickSortIter(a, lo, lt, depth, m);
+                lo = gt;
+                if (gt >= limit) {
+                    m.onExit();
+                    return;
+                }
+            }
+            m.onExit();
+        }
+        insertionSort(a, lo, hi, m);
+    }
+
+    // Bentley-McIlroy 3-way: [lo, lt) < pivot, [lt, gt) == pivot, [gt, hi) > pivot.
+    // Равные опорному ключи собираются по краям и в конце переносятся в середину,
+    // поэтому на сильно повторяющихся данных они сразу выпадают из рекурсии.
+    // Возвращает (lt << 32) | gt, чтобы не выделять массив на каждый вызов.
+    private static long partition(int[] a, int lo, int hi, Metrics m) {
+        long t = m.phaseBegin(Phase.QUICKSORT_PARTITION);
+        if (Kernels.enabled(m) && hi - lo >= Kernels.MIN_PARTITION) {
+            long bounds = Kernels.partition3(a, lo, hi, a[choosePivot(a, lo, hi, m)]);
+            m.phaseEnd(Phase.QUICKSORT_PARTITION, t, hi - lo);
+            return bounds;
+        }
+        swap(a, lo, choosePivot(a, lo, hi, m), m);
+        int pivot = a[lo];
+        int r = hi - 1;
+        int i = lo, j = hi;
+        int p = lo, q = hi;
+        while (true) {
+            while (less(a[++i], pivot, m)) if (i == r) break;
+            while (less(pivot, a[--j], m)) if (j == lo) break;
+
+            if (i == j && equal(a[i], pivot, m)) swap(a, ++p, i, m);
+            if (i >= j) break;
+
+            swap(a, i, j, m);
+            if (equal(a[i], pivot, m)) swap(a, ++p, i, m);
+            if (equal(a[j], pivot, m)) swap(a, --q, j, m);
+        }
+        i = j + 1;
+        for (int k = lo; k <= p; k++) swap(a, k, j--, m);
+        for (int k = r; k >= q; k--) swap(a, k, i++, m);
+        m.phaseEnd(Phase.QUICKSORT_PARTITION, t, hi - lo);
+        return ((long) (j + 1) << 32) | (i & 0xFFFFFFFFL);
+    }
+
+    private static long parallelPartition(int[] a, int lo, int hi, Metrics m) {
+        int pivot = a[choosePivot(a, lo, hi, m)];
+        int lt = parallelSplit(a, lo, hi, pivot, false, m);
+        int gt = parallelSplit(a, lt, hi, pivot, true, m);
+        return ((long) lt << 32) | (gt & 0xFFFFFFFFL);
+    }
+
+    // In-place разбиение [lo, hi): слева x < pivot (или x <= pivot при orEqual), справа остальные.
+    // Блоки разбиваются независимо, затем элементы, оказавшиеся не по свою сторону общей границы,
+    // попарно меняются местами тоже параллельно. Дополнительная память - O(число блоков).
+    private static int parallelSplit(int[] a, int lo, int hi, int pivot, boolean orEqual, Metrics m) {
+        int blocks = (hi - lo + PARTITION_BLOCK - 1) / PARTITION_BLOCK;
+        int[] mids = new int[blocks];
+        BlockSplitTask split = new BlockSplitTask(a, lo, hi, 0, blocks, pivot, orEqual, mids, m.fork());
+        split.invoke();
+        m.merge(split.m);
+
+        int boundary = lo;
+        for (int b = 0; b < blocks; b++) boundary += mids[b] - (lo + b * PARTITION_BLOCK);
+
+        // правые элементы левее границы и левые правее неё; их поровну
+        int[] wrongL = new int[blocks], wrongLPre = new int[blocks + 1];
+        int[] wrongR = new int[blocks], wrongRPre = new int[blocks + 1];
+        m.addAlloc(5L * blocks + 2);
+        int nl = 0, nr = 0;
+        for (int b = 0; b < blocks; b++) {
+            int start = lo + b * PARTITION_BLOCK;
+            int end = Math.min(hi, start + PARTITION_BLOCK);
+            int mid = mids[b];
+            int to = Math.min(end, boundary);
+            if (mid < to) {
+                wrongL[nl] = mid;
+                wrongLPre[nl + 1] = wrongLPre[nl] + (to - mid);
+                nl++;
+            }
+            int from = Math.max(start, boundary);
+            if (from < mid) {
+                wrongR[nr] = from;
+                wrongRPre[nr + 1] = wrongRPre[nr] + (mid - from);
+                nr++;
+            }
+        }
+        int wrong = wrongLPre[nl];
+        if (wrong > 0) {
+            FixupTask fix = new FixupTask(a, wrongL, wrongLPre, nl, wrongR, wrongRPre, nr, 0, wrong, m.fork());
+            fix.invoke();
+            m.merge(fix.m);
+        }
+        return boundary;
+    }
+
+    private static int splitBlock(int[] a, int lo, int hi, int pivot, boolean orEqual, Metrics m) {
+        int i = lo, j = hi - 1;
+        while (true) {
+            while (i <= j && goesLeft(a[i], pivot, orEqual, m)) i++;
+            while (i <= j && !goesLeft(a[j], pivot, orEqual, m)) j--;
+            if (i >= j) return i;
+            swap(a, i++, j--, m);
+        }
+    }
+
+    private static boolean goesLeft(int x, int pivot, boolean orEqual, Metrics m) {
+        m.onCompare();
+        return orEqual ? x <= pivot : x < pivot;
+    }
+
+    // медиана трёх на маленьких отрезках, ninther (медиана трёх медиан) на больших;
+    // позиции выборки случайные из ThreadLocalRandom, без общего состояния между потоками
+    private static int choosePivot(int[] a, int lo, int hi, Metrics m) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int n = hi - lo;
+        if (n < NINTHER_THRESHOLD) {
+            return median3(a, lo + rnd.nextInt(n), lo + rnd.nextInt(n), lo + rnd.nextInt(n), m);
+        }
+        int third = n / 3;
+        int m1 = median3(a, lo + rnd.nextInt(third), lo + rnd.nextInt(third), lo + rnd.nextInt(third), m);
+        int b = lo + third;
+        int m2 = median3(a, b + rnd.nextInt(third), b + rnd.nextInt(third), b + rnd.nextInt(third), m);
+        int c = lo + 2 * third, rest = hi - c;
+        int m3 = median3(a, c + rnd.nextInt(rest), c + rnd.nextInt(rest), c + rnd.nextInt(rest), m);
+        return median3(a, m1, m2, m3, m);
+    }
+
+    private static int median3(int[] a, int i, int j, int k, Metrics m) {
+        return less(a[i], a[j], m)
+                ? (less(a[j], a[k], m) ? j : less(a[i], a[k], m) ? k : i)
+                : (less(a[k], a[j], m) ? j : less(a[k], a[i], m) ? k : i);
+    }
+
+    private static void heapSort(int[] a, int lo, int hi, Metrics m) {
+        int n = hi - lo;
+        for (int i = n / 2 - 1; i >= 0; i--) siftDown(a, lo, i, n, m);
+        for (int end = n - 1; end > 0; end--) {
+            swap(a, lo, lo + end, m);
+            siftDown(a, lo, 0, end, m);
+        }
+    }
+
+    private static void siftDown(int[] a, int lo, int i, int n, Metrics m) {
+        int x = a[lo + i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) break;
+            if (child + 1 < n && less(a[lo + child], a[lo + child + 1], m)) child++;
+            if (!less(x, a[lo + child], m)) break;
+            a[lo + i] = a[lo + child];
+            m.onSwap();
+            i = child;
+        }
+        a[lo + i] = x;
+    }
+
+    static void insertionSort(int[] a, int lo, int hi, Metrics m) {
+        long t = m.phaseBegin(Phase.QUICKSORT_INSERTION);
+        if (Kernels.enabled(m) && hi - lo <= Kernels.MAX_NETWORK) {
+            Kernels.sortSmall(a, lo, hi);
+            m.phaseEnd(Phase.QUICKSORT_INSERTION, t, hi - lo);
+            return;
+        }
+        for (int i = lo + 1; i < hi; i++) {
+            int x = a[i];
+            int j = i - 1;
+            while (j >= lo) {
+                m.onCompare();
+                if (a[j] <= x) break;
+                a[j + 1] = a[j];
+                m.onSwap();
+                j--;
+            }
+            a[j + 1] = x;
+        }
+        m.phaseEnd(Phase.QUICKSORT_INSERTION, t, hi - lo);
+    }
+
+    private static boolean less(int x, int y, Metrics m) {
+        m.onCompare();
+        return x < y;
+    }
+
+    private static boolean equal(int x, int y, Metrics m) {
+        m.onCompare();
+        return x == y;
+    }
+
+    private static void swap(int[] a, int i, int j, Metrics m) {
+        int tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+        m.onSwap();
+    }
+
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a;
+        private final int lo, hi, depth;
+        final Metrics m;
+
+        SortTask(int[] a, int lo, int hi, int depth, Metrics m) {
+            this.a = a; this.lo = lo; this.hi = hi; this.depth = depth; this.m = m;
+        }
+
+        @Override protected void compute() {
+            int n = hi - lo;
+            if (n <= PARALLEL_CUTOFF) {
+                quickSortIter(a, lo, hi, depth, m);
+                return;
+            }
+            if (depth == 0) {
+                heapSort(a, lo, hi, m);
+                return;
+            }
+            m.onEnter(n);
+            long bounds = n >= PARALLEL_PARTITION_THRESHOLD ? parallelPartition(a, lo, hi, m) : partition(a, lo, hi, m);
+            int lt = (int) (bounds >>> 32);
+            int gt = (int) bounds;
+            SortTask left = new SortTask(a, lo, lt, depth - 1, m.fork());
+            SortTask right = new SortTask(a, gt, hi, depth - 1, m.fork());
+            invokeAll(left, right);
+            m.merge(left.m);
+            m.merge(right.m);
+            m.onExit();
+        }
+    }
+
+    // блоки [b0, b1) отрезка [lo, hi); в mids[b] - начало правой части блока b
+    private static final class BlockSplitTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a, mids;
+        private final int lo, hi, b0, b1, pivot;
+        private final boolean orEqual;
+        final Metrics m;
+
+        BlockSplitTask(int[] a, int lo, int hi, int b0, int b1, int pivot, boolean orEqual, int[] mids, Metrics m) {
+            this.a = a; this.lo = lo; this.hi = hi; this.b0 = b0; this.b1 = b1;
+            this.pivot = pivot; this.orEqual = orEqual; this.mids = mids; this.m = m;
+        }
+
+        @Override protected void compute() {
+            if (b1 - b0 == 1) {
+                int start = lo + b0 * PARTITION_BLOCK;
+                int end = Math.min(hi, start + PARTITION_BLOCK);
+                mids[b0] = splitBlock(a, start, end, pivot, orEqual, m);
+                return;
+            }
+            int mid = (b0 + b1) >>> 1;
+            BlockSplitTask left = new BlockSplitTask(a, lo, hi, b0, mid, pivot, orEqual, mids, m.fork());
+            BlockSplitTask right = new BlockSplitTask(a, lo, hi, mid, b1, pivot, orEqual, mids, m.fork());
+            invokeAll(left, right);
+            m.merge(left.m);
+            m.merge(right.m);
+        }
+    }
+
+    // w-й «чужой» элемент слева меняется с w-м «чужим» справа, w в [w0, w1);
+    // списки заданы началами отрезков и префиксными суммами их длин
+    private static final class FixupTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a, lStart, lPre, rStart, rPre;
+        private final int nl, nr, w0, w1;
+        final Metrics m;
+
+        FixupTask(int[] a, int[] lStart, int[] lPre, int nl, int[] rStart, int[] rPre, int nr,
+                  int w0, int w1, Metrics m) {
+            this.a = a; this.lStart = lStart; this.lPre = lPre; this.nl = nl;
+            this.rStart = rStart; this.rPre = rPre; this.nr = nr;
+            this.w0 = w0; this.w1 = w1; this.m = m;
+        }
+
+        @Override protected void compute() {
+            if (w1 - w0 > PARTITION_BLOCK) {
+                int mid = (w0 + w1) >>> 1;
+                FixupTask left = new FixupTask(a, lStart, lPre, nl, rStart, rPre, nr, w0, mid, m.fork());
+                FixupTask right = new FixupTask(a, lStart, lPre, nl, rStart, rPre, nr, mid, w1, m.fork());
+                invokeAll(left, right);
+                m.merge(left.m);
+                m.merge(right.m);
+                return;
+            }
+            int li = segmentOf(lPre, nl, w0), ri = segmentOf(rPre, nr, w0);
+            int pl = lStart[li] + (w0 - lPre[li]);
+            int pr = rStart[ri] + (w0 - rPre[ri]);
+            for (int w = w0; w < w1; w++) {
+                if (w == lPre[li + 1]) pl = lStart[++li];
+                if (w == rPre[ri + 1]) pr = rStart[++ri];
+                swap(a, pl++, pr++, m);
+            }
+        }
+
+        // последний отрезок с pre[k] <= w
+        private static int segmentOf(int[] pre, int count, int w) {
+            int lo = 0, hi = count - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (pre[mid] <= w) lo = mid;
+                else hi = mid - 1;
+            }
+            return lo;
+        }
+    }
+
+    public static boolean isSorted(int[] a) {
+        for (int i = 1; i < a.length; i++) if (a[i-1] > a[i]) return false;
+        return true;
+    }
+
+    public static void main(String[] args) {
+        int[] demo = {5,4,3,2,1,7,6,9,8,0};
+        Metrics m = new Metrics();
+        sort(demo, m);
+        System.out.println(Arrays.toString(demo));
+        System.out.println(m);
+    }
 }
\ No newline at end of file
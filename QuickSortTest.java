@@ -4,6 +4,7 @@ import algo.common.Metrics;
 import org.junit.jupiter.api.Test;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class QuickSortTest {
@@ -37,4 +38,75 @@ public class QuickSortTest {
         QuickSort.sort(a, new Metrics());
         assertTrue(QuickSort.isSorted(a));
     }
+
+    @Test
+    void manyDuplicates() {
+        Random rnd = new Random(5);
+        for (int distinct : new int[]{1, 2, 3, 10, 100}) {
+            int[] a = rnd.ints(200_000, 0, distinct).toArray();
+            int[] b = Arrays.copyOf(a, a.length);
+            Metrics m = new Metrics();
+            QuickSort.sort(a, m);
+            Arrays.sort(b);
+            assertArrayEquals(b, a, "distinct=" + distinct);
+            // равные ключи выпадают из рекурсии: сравнений порядка n * log(distinct), а не n^2
+            assertTrue(m.comparisons < 40L * a.length, "comparisons=" + m.comparisons);
+        }
+    }
+
+    @Test
+    void depthStaysLogarithmic() {
+        int n = 100_000;
+        int[][] inputs = new int[3][n];
+        for (int i = 0; i < n; i++) {
+            inputs[0][i] = i;
+            inputs[1][i] = i < n / 2 ? i : n - i;
+            inputs[2][i] = i % 2 == 0 ? i : n - i;
+        }
+        int bound = 2 + (int) Math.ceil(Math.log(n) / Math.log(2));
+        for (int[] a : inputs) {
+            int[] b = Arrays.copyOf(a, a.length);
+            Metrics m = new Metrics();
+            QuickSort.sort(a, m);
+            Arrays.sort(b);
+            assertArrayEquals(b, a);
+            assertTrue(m.maxRecursionDepth <= bound, "depth " + m.maxRecursionDepth + " > " + bound);
+        }
+    }
+
+    @Test
+    void extremeValues() {
+        int[] a = {Integer.MAX_VALUE, 0, Integer.MIN_VALUE, -1, Integer.MAX_VALUE, 1, Integer.MIN_VALUE};
+        int[] b = Arrays.copyOf(a, a.length);
+        QuickSort.sort(a, new Metrics());
+        Arrays.sort(b);
+        assertArrayEquals(b, a);
+    }
+
+    @Test
+    void parallelMatchesArraysSort() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Random rnd = new Random(17);
+            int[][] inputs = {
+                    rnd.ints(3_000_000).toArray(),
+                    rnd.ints(2_500_000, 0, 5).toArray(),
+                    new int[2_000_000],
+                    rnd.ints(50_000, -100, 100).toArray(),
+                    new int[0],
+                    {1}
+            };
+            for (int i = 0; i < inputs[2].length; i++) inputs[2][i] = inputs[2].length - i;
+            for (int[] a : inputs) {
+                int[] b = Arrays.copyOf(a, a.length);
+                Metrics m = new Metrics();
+                QuickSort.parallelSort(a, m, pool);
+                Arrays.sort(b);
+                assertArrayEquals(b, a, "n=" + a.length);
+                assertTrue(m.allocations <= a.length / 16, "allocations=" + m.allocations);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
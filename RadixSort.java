@@ -0,0 +1,238 @@
+package algo.sort;
+
+import algo.common.ForBlocks;
+import algo.common.Metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+// Поразрядная сортировка int[] по байтам. Вместо сравнений в Metrics считаются
+// проходы распределения (passes) и перемещённые байты (bytesMoved).
+public final class RadixSort {
+    private static final int BITS = 8;
+    private static final int RADIX = 1 << BITS;
+    private static final int MASK = RADIX - 1;
+    private static final int DIGITS = Integer.SIZE / BITS;
+    // у старшего байта инвертируем знаковый бит: отрицательные встают раньше положительных
+    private static final int SIGN_FLIP = 0x80;
+    private static final int INSERTION_CUTOFF = 32;
+    private static final int PARALLEL_THRESHOLD = 1 << 17;
+    private static final int PARALLEL_BLOCK = 1 << 16;
+
+    private RadixSort() {}
+
+    private static int flip(int d) { return d == DIGITS - 1 ? SIGN_FLIP : 0; }
+
+    // LSD: один проход на гистограммы всех байтов, затем по проходу на байт, буфер размера n.
+    // Байт пропускается, если у всех ключей он одинаковый.
+    public static void sort(int[] a, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        int n = a.length;
+        if (n > 1) {
+            int[] counts = new int[DIGITS * RADIX];
+            for (int x : a) {
+                counts[x & MASK]++;
+                counts[RADIX + ((x >>> 8) & MASK)]++;
+                counts[2 * RADIX + ((x >>> 16) & MASK)]++;
+                counts[3 * RADIX + ((x >>> 24) ^ SIGN_FLIP)]++;
+            }
+            int[] buf = new int[n];
+            m.addAlloc(n + DIGITS * RADIX);
+            int[] src = a, dst = buf;
+            for (int d = 0; d < DIGITS; d++) {
+                int shift = d * BITS, flip = flip(d), base = d * RADIX;
+                if (counts[base + (((a[0] >>> shift) & MASK) ^ flip)] == n) continue;
+                int sum = 0;
+                for (int b = 0; b < RADIX; b++) {
+                    int c = counts[base + b];
+                    counts[base + b] = sum;
+                    sum += c;
+                }
+                for (int i = 0; i < n; i++) {
+                    int x = src[i];
+                    dst[counts[base + (((x >>> shift) & MASK) ^ flip)]++] = x;
+                }
+                m.onPass();
+                m.addBytesMoved(4L * n);
+                int[] t = src; src = dst; dst = t;
+            }
+            if (src != a) {
+                System.arraycopy(src, 0, a, 0, n);
+                m.addBytesMoved(4L * n);
+            }
+        }
+        m.stopTimer();
+    }
+
+    // MSD «американский флаг»: перестановка циклами на месте, без буфера размера n.
+    // passes - число распределений по корзинам (по одному на каждый обработанный отрезок).
+    public static void sortInPlace(int[] a, Metrics m) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (m == null) m = Metrics.NOOP;
+        m.startTimer();
+        if (a.length > 1) {
+            // счётчики на каждый уровень: корзины уровня d живы, пока обрабатываются их дети
+            int[][] heads = new int[DIGITS][RADIX + 1];
+            int[][] tails = new int[DIGITS][RADIX];
+            m.addAlloc(DIGITS * (2 * RADIX + 1));
+            msd(a, 0, a.length, DIGITS - 1, heads, tails, m);
+        }
+        m.stopTimer();
+    }
+
+    private static void msd(int[] a, int lo, int hi, int d, int[][] heads, int[][] tails, Metrics m) {
+        m.onEnter(hi - lo);
+        int n = hi - lo;
+        while (true) {
+            if (n <= INSERTION_CUTOFF) {
+                insertionSort(a, lo, hi, m);
+                m.onExit();
+                return;
+            }
+            int shift = d * BITS, flip = flip(d);
+            int[] head = heads[d];
+            Arrays.fill(head, 0);
+            for (int i = lo; i < hi; i++) head[(((a[i] >>> shift) & MASK) ^ flip) + 1]++;
+            if (head[(((a[lo] >>> shift) & MASK) ^ flip) + 1] != n) break;
+            if (d == 0) {
+                m.onExit();
+                return;
+            }
+            d--;
+        }
+        int shift = d * BITS, flip = flip(d);
+        int[] head = heads[d], tail = tails[d];
+        head[0] = lo;
+        for (int b = 0; b < RADIX; b++) {
+            head[b + 1] += head[b];
+            tail[b] = head[b + 1];
+        }
+        long moved = 0;
+        for (int b = 0; b < RADIX; b++) {
+            while (head[b] < tail[b]) {
+                int v = a[head[b]];
+                int db = ((v >>> shift) & MASK) ^ flip;
+                if (db == b) {
+                    head[b]++;
+                    continue;
+                }
+                do {
+                    int t = a[head[db]];
+                    a[head[db]++] = v;
+                    v = t;
+                    db = ((v >>> shift) & MASK) ^ flip;
+                    moved++;
+                } while (db != b);
+                a[head[b]++] = v;
+                moved++;
+            }
+        }
+        m.onPass();
+        m.addBytesMoved(4L * moved);
+        if (d > 0) {
+            // после перестановки head[b] == tail[b] == конец корзины b
+            int start = lo;
+            for (int b = 0; b < RADIX; b++) {
+                int end = tail[b];
+                if (end - start > 1) msd(a, start, end, d - 1, heads, tails, m);
+                start = end;
+            }
+        }
+        m.onExit();
+    }
+
+    public static void parallelSort(int[] a, Metrics m) {
+        parallelSort(a, m, ForkJoinPool.commonPool());
+    }
+
+    // LSD с параллельными гистограммами и разбросом: у каждого блока своя гистограмма,
+    // смещения (байт, блок) считаются префиксными суммами, поэтому разброс устойчив
+    // и блоки пишут в непересекающиеся места.
+    public static void parallelSort(int[] a, Metrics m, ForkJoinPool pool) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (pool == null) throw new IllegalArgumentException("pool is null");
+        if (m == null) m = Metrics.NOOP;
+        int n = a.length;
+        if (n < PARALLEL_THRESHOLD) {
+            sort(a, m);
+            return;
+        }
+        m.startTimer();
+        int blocks = (n + PARALLEL_BLOCK - 1) / PARALLEL_BLOCK;
+        int[] hist = new int[blocks * RADIX];
+        int[] buf = new int[n];
+        m.addAlloc(n + (long) blocks * RADIX);
+
+        int[] src = a, dst = buf;
+        for (int d = 0; d < DIGITS; d++) {
+            int shift = d * BITS, flip = flip(d);
+            int[] from = src, to = dst;
+            pool.invoke(new ForBlocks(0, blocks, b -> {
+                int base = b * RADIX;
+                Arrays.fill(hist, base, base + RADIX, 0);
+                int end = Math.min(n, (b + 1) * PARALLEL_BLOCK);
+                for (int i = b * PARALLEL_BLOCK; i < end; i++) hist[base + (((from[i] >>> shift) & MASK) ^ flip)]++;
+            }));
+            int first = ((from[0] >>> shift) & MASK) ^ flip, total = 0;
+            for (int b = 0; b < blocks; b++) total += hist[b * RADIX + first];
+            if (total == n) continue;
+
+            int sum = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                for (int b = 0; b < blocks; b++) {
+                    int i = b * RADIX + digit;
+                    int c = hist[i];
+                    hist[i] = sum;
+                    sum += c;
+                }
+            }
+            pool.invoke(new ForBlocks(0, blocks, b -> {
+                int base = b * RADIX;
+                int end = Math.min(n, (b + 1) * PARALLEL_BLOCK);
+                for (int i = b * PARALLEL_BLOCK; i < end; i++) {
+                    int x = from[i];
+                    to[hist[base + (((x >>> shift) & MASK) ^ flip)]++] = x;
+                }
+            }));
+            m.onPass();
+            m.addBytesMoved(4L * n);
+            src = to;
+            dst = from;
+        }
+        if (src != a) {
+            System.arraycopy(src, 0, a, 0, n);
+            m.addBytesMoved(4L * n);
+        }
+        m.stopTimer();
+    }
+
+    private static void insertionSort(int[] a, int lo, int hi, Metrics m) {
+        for (int i = lo + 1; i < hi; i++) {
+            int x = a[i];
+            int j = i - 1;
+            while (j >= lo) {
+                m.onCompare();
+                if (a[j] <= x) break;
+                a[j + 1] = a[j];
+                m.onSwap();
+                j--;
+            }
+            a[j + 1] = x;
+        }
+    }
+
+    public static boolean isSorted(int[] a) {
+        for (int i = 1; i < a.length; i++) if (a[i-1] > a[i]) return false;
+        return true;
+    }
+
+    public static void main(String[] args) {
+        int[] demo = {5,-4,3,2,-1,7,6,9,8,0};
+        Metrics m = new Metrics();
+        sort(demo, m);
+        System.out.println(Arrays.toString(demo));
+        System.out.println(m);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package algo.sort;
+
+import algo.common.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RadixSortTest {
+
+    @Test
+    void randomWithNegatives() {
+        Random rnd = new Random(3);
+        for (int t = 0; t < 20; t++) {
+            int n = rnd.nextInt(5000);
+            int[] a = rnd.ints(n).toArray();
+            int[] b = Arrays.copyOf(a, a.length);
+            int[] c = Arrays.copyOf(a, a.length);
+            RadixSort.sort(a, new Metrics());
+            RadixSort.sortInPlace(b, new Metrics());
+            Arrays.sort(c);
+            assertArrayEquals(c, a, "lsd trial " + t);
+            assertArrayEquals(c, b, "msd trial " + t);
+        }
+    }
+
+    @Test
+    void extremeValues() {
+        int[] a = {Integer.MAX_VALUE, 0, Integer.MIN_VALUE, -1, 1, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1};
+        int[] b = Arrays.copyOf(a, a.length);
+        int[] c = Arrays.copyOf(a, a.length);
+        RadixSort.sort(a, null);
+        RadixSort.sortInPlace(b, null);
+        Arrays.sort(c);
+        assertArrayEquals(c, a);
+        assertArrayEquals(c, b);
+    }
+
+    @Test
+    void skipsConstantBytes() {
+        int[] a = new Random(4).ints(10_000, 0, 256).toArray();
+        int[] b = Arrays.copyOf(a, a.length);
+        Metrics m = new Metrics();
+        RadixSort.sort(a, m);
+        Arrays.sort(b);
+        assertArrayEquals(b, a);
+        assertEquals(1, m.passes);
+        assertEquals(0, m.comparisons);
+        // один проход туда и копия обратно в a
+        assertEquals(8L * a.length, m.bytesMoved);
+    }
+
+    @Test
+    void inPlaceDoesNotAllocateBuffer() {
+        int[] a = new Random(5).ints(100_000, -50_000, 50_000).toArray();
+        int[] b = Arrays.copyOf(a, a.length);
+        Metrics m = new Metrics();
+        RadixSort.sortInPlace(a, m);
+        Arrays.sort(b);
+        assertArrayEquals(b, a);
+        assertTrue(m.allocations < 4096, "allocations=" + m.allocations);
+    }
+
+    @Test
+    void parallelMatchesSequential() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Random rnd = new Random(6);
+            for (int[] a : new int[][]{rnd.ints(1_000_000).toArray(), rnd.ints(500_000, -3, 3).toArray(), rnd.ints(1000).toArray()}) {
+                int[] b = Arrays.copyOf(a, a.length);
+                Metrics m = new Metrics();
+                RadixSort.parallelSort(a, m, pool);
+                Arrays.sort(b);
+                assertArrayEquals(b, a, "n=" + a.length);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+package algo.sort;
+
+import algo.common.Metrics;
+
+import java.util.Arrays;
+
+/**
+ * Потоковый top-k на двоичной куче из int без упаковки: в куче k лучших на данный момент,
+ * корень - худший из них, поэтому новый элемент сравнивается только с корнем.
+ * O(log k) на вставку в худшем случае, память O(k).
+ * Для наименьших ключи хранятся инвертированными (~x), и та же min-куча работает наоборот.
+ */
+public final class TopK {
+    private final int[] heap;
+    private final boolean smallest;
+    private final Metrics m;
+    private int size;
+    private long seen;
+
+    private TopK(int k, boolean smallest, Metrics m) {
+        if (k < 1) throw new IllegalArgumentException("k must be positive");
+        this.heap = new int[k];
+        this.smallest = smallest;
+        this.m = m == null ? Metrics.NOOP : m;
+        this.m.addAlloc(k);
+    }
+
+    public static TopK largest(int k, Metrics m) {
+        return new TopK(k, false, m);
+    }
+
+    public static TopK smallest(int k, Metrics m) {
+        return new TopK(k, true, m);
+    }
+
+    public int k() { return heap.length; }
+
+    public int size() { return size; }
+
+    public long seen() { return seen; }
+
+    public void add(int x) {
+        seen++;
+        int key = smallest ? ~x : x;
+        if (size < heap.length) {
+            heap[size] = key;
+            siftUp(size++);
+            return;
+        }
+        m.onCompare();
+        if (key > heap[0]) {
+            heap[0] = key;
+            m.onSwap();
+            siftDown(0);
+        }
+    }
+
+    public void addAll(int[] a, int from, int to) {
+        if (a == null) throw new IllegalArgumentException("array is null");
+        if (from < 0 || to > a.length || from > to) throw new IllegalArgumentException("bad range");
+        for (int i = from; i < to; i++) add(a[i]);
+    }
+
+    // худший из текущих k: порог, который должен превзойти новый элемент
+    public int threshold() {
+        if (size == 0) throw new IllegalStateException("empty");
+        return smallest ? ~heap[0] : heap[0];
+    }
+
+    // текущие k лучших, от лучшего к худшему; куча не меняется
+    public int[] values() {
+        int[] res = Arrays.copyOf(heap, size);
+        m.addAlloc(size);
+        QuickSort.sortRange(res, 0, size, m);
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            int t = res[i]; res[i] = res[j]; res[j] = t;
+        }
+        if (smallest) for (int i = 0; i < size; i++) res[i] = ~res[i];
+        return res;
+    }
+
+    public void clear() {
+        size = 0;
+        seen = 0;
+    }
+
+    private void siftUp(int i) {
+        int x = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            m.onCompare();
+            if (heap[parent] <= x) break;
+            heap[i] = heap[parent];
+            m.onSwap();
+            i = parent;
+        }
+        heap[i] = x;
+    }
+
+    private void siftDown(int i) {
+        int x = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size) {
+                m.onCompare();
+                if (heap[child + 1] < heap[child]) child++;
+            }
+            m.onCompare();
+            if (x <= heap[child]) break;
+            heap[i] = heap[child];
+            m.onSwap();
+            i = child;
+        }
+        heap[i] = x;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+package algo.bench;
+
+import java.util.Arrays;
+
+// Точка входа benchmarks.jar: обычный JMH Main, но по умолчанию с GC-профайлером,
+// чтобы вместе со временем печатался alloc rate (gc.alloc.rate.norm - байт на операцию).
+// Usage: java -jar target/benchmarks.jar [JMH options], например
+//        java -jar target/benchmarks.jar SortBenchmark -p size=1000000 -rf json
+public final class BenchMain {
+    private BenchMain() {}
+
+    public static void main(String[] args) throws Exception {
+        if (Arrays.asList(args).contains("-prof")) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        String[] full = new String[args.length + 2];
+        full[0] = "-prof";
+        full[1] = "gc";
+        System.arraycopy(args, 0, full, 2, args.length);
+        org.openjdk.jmh.Main.main(full);
+    }
+}
@@ -0,0 +1,59 @@
+package algo.bench;
+
+import algo.common.Inputs;
+import algo.common.Metrics;
+import algo.pair.ClosestPair;
+import algo.pair.GridClosestPair;
+import algo.pair.Point2D;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ClosestPairBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    Inputs.PointDistribution distribution;
+
+    private Point2D[] points;
+    private double[] xs, ys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        points = Inputs.points(distribution, size, 42);
+        xs = new double[size];
+        ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = points[i].x();
+            ys[i] = points[i].y();
+        }
+    }
+
+    @Benchmark
+    public ClosestPair.Result closest() {
+        return ClosestPair.closest(points, Metrics.NOOP);
+    }
+
+    @Benchmark
+    public ClosestPair.IndexResult closestArrays() {
+        return ClosestPair.closest(xs, ys, Metrics.NOOP);
+    }
+
+    @Benchmark
+    public ClosestPair.IndexResult grid() {
+        return GridClosestPair.closest(xs, ys, Metrics.NOOP);
+    }
+
+    @Benchmark
+    public ClosestPair.IndexResult parallel() {
+        return ClosestPair.parallelClosest(xs, ys, Metrics.NOOP);
+    }
+}
\ No newline at end of file
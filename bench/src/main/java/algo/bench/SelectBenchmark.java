@@ -0,0 +1,60 @@
+package algo.bench;
+
+import algo.common.Inputs;
+import algo.common.Metrics;
+import algo.select.DeterministicSelect;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "--add-modules=jdk.incubator.vector"})
+public class SelectBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    @Param({"RANDOM", "SORTED", "REVERSED", "MANY_DUPLICATES", "SAWTOOTH"})
+    Inputs.Distribution distribution;
+
+    // ранг как доля от n: 0.5 - медиана, 0.99 - p99
+    @Param({"0.5", "0.99"})
+    double rank;
+
+    private int[] source;
+    private int[] work;
+    private int k;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        source = Inputs.ints(distribution, size, 42);
+        work = new int[size];
+        k = Math.min(size - 1, (int) (rank * size));
+    }
+
+    @Benchmark
+    public int select() {
+        return DeterministicSelect.select(source, k, Metrics.NOOP);
+    }
+
+    @Benchmark
+    public int selectInPlace() {
+        System.arraycopy(source, 0, work, 0, size);
+        return DeterministicSelect.selectInPlace(work, k, Metrics.NOOP);
+    }
+
+    @Benchmark
+    public int introselectInPlace() {
+        System.arraycopy(source, 0, work, 0, size);
+        return DeterministicSelect.introselectInPlace(work, k, Metrics.NOOP);
+    }
+
+    @Benchmark
+    public int parallelSelect() {
+        return DeterministicSelect.parallelSelect(source, k, Metrics.NOOP);
+    }
+}
\ No newline at end of file
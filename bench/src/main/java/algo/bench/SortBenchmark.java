@@ -0,0 +1,79 @@
+package algo.bench;
+
+import algo.common.Inputs;
+import algo.common.Metrics;
+import algo.sort.AdaptiveSort;
+import algo.sort.MergeSort;
+import algo.sort.QuickSort;
+import algo.sort.RadixSort;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Сортировки работают на месте, поэтому каждый вызов сначала копирует исходный массив
+// в рабочий; стоимость копии отдельно видна в copyBaseline.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "--add-modules=jdk.incubator.vector"})
+public class SortBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    @Param({"RANDOM", "SORTED", "REVERSED", "MANY_DUPLICATES", "SAWTOOTH"})
+    Inputs.Distribution distribution;
+
+    @Param({"noop"})
+    String metrics;
+
+    private int[] source;
+    private int[] work;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        source = Inputs.ints(distribution, size, 42);
+        work = new int[size];
+    }
+
+    private Metrics metrics() {
+        return "counting".equals(metrics) ? new Metrics() : Metrics.NOOP;
+    }
+
+    @Benchmark
+    public int[] copyBaseline() {
+        System.arraycopy(source, 0, work, 0, size);
+        return work;
+    }
+
+    @Benchmark
+    public int[] mergeSort() {
+        System.arraycopy(source, 0, work, 0, size);
+        MergeSort.sort(work, metrics());
+        return work;
+    }
+
+    @Benchmark
+    public int[] quickSort() {
+        System.arraycopy(source, 0, work, 0, size);
+        QuickSort.sort(work, metrics());
+        return work;
+    }
+
+    @Benchmark
+    public int[] radixSort() {
+        System.arraycopy(source, 0, work, 0, size);
+        RadixSort.sort(work, metrics());
+        return work;
+    }
+
+    // профиль входа и выбор движка входят в замер
+    @Benchmark
+    public int[] adaptiveSort() {
+        System.arraycopy(source, 0, work, 0, size);
+        AdaptiveSort.sort(work, metrics());
+        return work;
+    }
+}
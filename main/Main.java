@@ -1,61 +1,90 @@
-package algo.main;
-
-import algo.common.Metrics;
-import algo.sort.MergeSort;
-import algo.sort.QuickSort;
-import algo.select.DeterministicSelect;
-import algo.pair.ClosestPair;
-import algo.pair.Point2D;
-
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.Random;
-
-public class Main {
-    public static void main(String[] args) throws IOException {
-        if (args.length < 2) {
-            System.out.println("Usage: java -jar dac.jar algo n");
-            System.out.println("algo = mergesort | quicksort | select | closest");
-            return;
-        }
-        String algo = args[0];
-        int n = Integer.parseInt(args[1]);
-
-        Metrics m = new Metrics();
-        Random rnd = new Random(42);
-
-        switch (algo) {
-            case "mergesort" -> {
-                int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
-                MergeSort.sort(a, m);
-            }
-            case "quicksort" -> {
-                int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
-                QuickSort.sort(a, m);
-            }
-            case "select" -> {
-                int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
-                int k = n/2;
-                DeterministicSelect.select(a, k, m);
-            }
-            case "closest" -> {
-                Point2D[] pts = new Point2D[n];
-                for (int i = 0; i < n; i++) {
-                    pts[i] = new Point2D(rnd.nextDouble()*1000, rnd.nextDouble()*1000);
-                }
-                ClosestPair.closest(pts, m);
-            }
-            default -> throw new IllegalArgumentException("Unknown algo: " + algo);
-        }
-
-
-        System.out.println("Algo: " + algo + ", n=" + n);
-        System.out.println(m);
-
-
-        try (FileWriter fw = new FileWriter("metrics.csv", true)) {
-            fw.write(algo + "," + n + "," + m.comparisons + "," + m.swaps + "," +
-                    m.allocations + "," + m.maxRecursionDepth + "," + m.elapsedNanos + "\n");
-        }
-    }
-}
+package algo.main;
+
+import algo.common.Metrics;
+import algo.sort.AdaptiveSort;
+import algo.sort.MergeSort;
+import algo.sort.QuickSort;
+import algo.sort.RadixSort;
+import algo.select.DeterministicSelect;
+import algo.pair.ClosestPair;
+import algo.pair.GridClosestPair;
+import algo.pair.Point2D;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class Main {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("sweep")) {
+            Sweep.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length < 2) {
+            System.out.println("Usage: java -jar dac.jar algo n");
+            System.out.println("algo = mergesort | quicksort | radix | adaptive | select | introselect | closest | closest-grid");
+            System.out.println("       java -jar dac.jar sweep [--algos ...] [--sizes ...] (see algo.main.Sweep)");
+            return;
+        }
+        String algo = args[0];
+        int n = Integer.parseInt(args[1]);
+
+        Metrics m = new Metrics();
+        Random rnd = new Random(42);
+
+        switch (algo) {
+            case "mergesort" -> {
+                int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
+                MergeSort.sort(a, m);
+            }
+            case "quicksort" -> {
+                int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
+                QuickSort.sort(a, m);
+            }
+            case "radix" -> {
+                int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
+                RadixSort.sort(a, m);
+            }
+            case "adaptive" -> {
+                int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
+                System.out.println("Engine: " + AdaptiveSort.sort(a, m));
+            }
+            case "select" -> {
+                int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
+                int k = n/2;
+                DeterministicSelect.select(a, k, m);
+            }
+            case "introselect" -> {
+                int[] a = rnd.ints(n, -1_000_000, 1_000_000).toArray();
+                DeterministicSelect.introselect(a, n/2, m);
+            }
+            case "closest" -> {
+                Point2D[] pts = new Point2D[n];
+                for (int i = 0; i < n; i++) {
+                    pts[i] = new Point2D(rnd.nextDouble()*1000, rnd.nextDouble()*1000);
+                }
+                ClosestPair.closest(pts, m);
+            }
+            case "closest-grid" -> {
+                Point2D[] pts = new Point2D[n];
+                for (int i = 0; i < n; i++) {
+                    pts[i] = new Point2D(rnd.nextDouble()*1000, rnd.nextDouble()*1000);
+                }
+                GridClosestPair.closest(pts, m);
+            }
+            default -> throw new IllegalArgumentException("Unknown algo: " + algo);
+        }
+
+
+        System.out.println("Algo: " + algo + ", n=" + n);
+        System.out.println(m);
+
+
+        try (FileWriter fw = new FileWriter("metrics.csv", true)) {
+            fw.write(algo + "," + n + "," + m.comparisons + "," + m.swaps + "," +
+                    m.allocations + "," + m.maxRecursionDepth + "," + m.elapsedNanos + "," +
+                    m.passes + "," + m.bytesMoved + "\n");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package algo.main;
+
+import algo.common.Metrics;
+import algo.pair.ClosestPair;
+import algo.pair.Point2D;
+import algo.select.DeterministicSelect;
+import algo.sort.Kernels;
+import algo.sort.MergeSort;
+import algo.sort.QuickSort;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+
+// Сравнивает стоимость одного прогона с Metrics.NOOP и со считающим Metrics.
+// С NOOP алгоритмы берут векторные ядра, со счётчиками - нет, поэтому замер только скалярный:
+// при включённых ядрах запуск отказывается, нужно -Dalgo.vector=false или запуск без модуля.
+// Usage: java algo.main.MetricsOverhead [n] [iterations]
+public class MetricsOverhead {
+    private static final int WARMUP = 10;
+
+    public static void main(String[] args) {
+        if (Kernels.VECTOR) {
+            throw new IllegalStateException("vector kernels are on, NOOP runs would not be scalar: rerun with -Dalgo.vector=false");
+        }
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iters = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Random rnd = new Random(42);
+        int[] ints = rnd.ints(n, -1_000_000, 1_000_000).toArray();
+        int pointsN = Math.min(n, 200_000);
+        Point2D[] pts = new Point2D[pointsN];
+        for (int i = 0; i < pointsN; i++) pts[i] = new Point2D(rnd.nextDouble() * 1000, rnd.nextDouble() * 1000);
+        int[] work = new int[n];
+
+        System.out.printf("%-10s %14s %14s %9s%n", "algo", "noop ns/op", "counting ns/op", "overhead");
+        report("mergesort", iters, m -> {
+            System.arraycopy(ints, 0, work, 0, n);
+            MergeSort.sort(work, m);
+        });
+        report("quicksort", iters, m -> {
+            System.arraycopy(ints, 0, work, 0, n);
+            QuickSort.sort(work, m);
+        });
+        report("select", iters, m -> {
+            System.arraycopy(ints, 0, work, 0, n);
+            DeterministicSelect.selectInPlace(work, n / 2, m);
+        });
+        report("closest", iters, m -> ClosestPair.closest(Arrays.copyOf(pts, pts.length), m));
+    }
+
+    private static void report(String name, int iters, Consumer<Metrics> run) {
+        for (int i = 0; i < WARMUP; i++) {
+            run.accept(Metrics.NOOP);
+            run.accept(new Metrics());
+        }
+        long noop = median(iters, () -> run.accept(Metrics.NOOP));
+        long counting = median(iters, () -> run.accept(new Metrics()));
+        System.out.printf("%-10s %14d %14d %8.1f%%%n", name, noop, counting, 100.0 * (counting - noop) / noop);
+    }
+
+    private static long median(int iters, Runnable r) {
+        long[] t = new long[iters];
+        for (int i = 0; i < iters; i++) {
+            long s = System.nanoTime();
+            r.run();
+            t[i] = System.nanoTime() - s;
+        }
+        Arrays.sort(t);
+        return t[iters / 2];
+    }
+}
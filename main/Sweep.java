@@ -0,0 +1,316 @@
+package algo.main;
+
+import algo.common.Inputs;
+import algo.common.Metrics;
+import algo.pair.ClosestPair;
+import algo.pair.GridClosestPair;
+import algo.pair.KdTree;
+import algo.pair.Point2D;
+import algo.select.DeterministicSelect;
+import algo.sort.AdaptiveSort;
+import algo.sort.MergeSort;
+import algo.sort.PartialSort;
+import algo.sort.QuickSort;
+import algo.sort.RadixSort;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+// Прогон сетки алгоритмы x размеры x распределения x потоки в одной JVM: прогрев, замеры,
+// медиана и перцентили времени, счётчики Metrics, сборки мусора и выделенные байты на ячейку.
+// Результат - CSV с заголовком и/или JSON с описанием окружения.
+// Usage: java algo.main.Sweep [--algos a,b] [--sizes n,m] [--dists RANDOM,SORTED]
+//        [--point-dists UNIFORM] [--threads 1,4] [--warmup 3] [--iters 10] [--seed 42]
+//        [--out sweep] [--format csv|json|both]
+public class Sweep {
+
+    private interface Kernel {
+        long run(Case c, Metrics m, ForkJoinPool pool);
+    }
+
+    private record Algo(String name, boolean points, boolean parallel, Kernel kernel) {}
+
+    // входные данные ячейки; work - копия source, которую алгоритм может портить.
+    // refill вызывается до начала замера, копирование в время не входит
+    private static final class Case {
+        int[] source, work;
+        double[] xs, ys;
+        Point2D[] pts;
+
+        void refill() {
+            if (source != null) System.arraycopy(source, 0, work, 0, source.length);
+        }
+    }
+
+    private static final List<Algo> ALGOS = List.of(
+            new Algo("mergesort", false, false, (c, m, p) -> { int[] a = c.work; MergeSort.sort(a, m); return a[0]; }),
+            new Algo("mergesort-adaptive", false, false, (c, m, p) -> { int[] a = c.work; MergeSort.adaptiveSort(a, m); return a[0]; }),
+            new Algo("mergesort-parallel", false, true, (c, m, p) -> { int[] a = c.work; MergeSort.parallelSort(a, m, p); return a[0]; }),
+            new Algo("quicksort", false, false, (c, m, p) -> { int[] a = c.work; QuickSort.sort(a, m); return a[0]; }),
+            new Algo("quicksort-parallel", false, true, (c, m, p) -> { int[] a = c.work; QuickSort.parallelSort(a, m, p); return a[0]; }),
+            new Algo("radix", false, false, (c, m, p) -> { int[] a = c.work; RadixSort.sort(a, m); return a[0]; }),
+            new Algo("radix-parallel", false, true, (c, m, p) -> { int[] a = c.work; RadixSort.parallelSort(a, m, p); return a[0]; }),
+            new Algo("counting", false, false, (c, m, p) -> { int[] a = c.work; AdaptiveSort.countingSort(a, m); return a[0]; }),
+            new Algo("adaptive", false, false, (c, m, p) -> { int[] a = c.work; AdaptiveSort.sort(a, m); return a[0]; }),
+            new Algo("partial-sort", false, false, (c, m, p) -> { int[] a = c.work; PartialSort.partialSort(a, Math.max(1, a.length / 100), m); return a[0]; }),
+            new Algo("select", false, false, (c, m, p) -> DeterministicSelect.selectInPlace(c.work, c.source.length / 2, m)),
+            new Algo("introselect", false, false, (c, m, p) -> DeterministicSelect.introselectInPlace(c.work, c.source.length / 2, m)),
+            new Algo("select-parallel", false, true, (c, m, p) -> DeterministicSelect.parallelSelect(c.source, c.source.length / 2, m, p)),
+            new Algo("closest", true, false, (c, m, p) -> ClosestPair.closest(c.xs, c.ys, m).i()),
+            new Algo("closest-parallel", true, true, (c, m, p) -> ClosestPair.parallelClosest(c.xs, c.ys, m, p).i()),
+            new Algo("closest-grid", true, false, (c, m, p) -> GridClosestPair.closest(c.xs, c.ys, 42, m).i()),
+            new Algo("kdtree-build", true, false, (c, m, p) -> KdTree.build(c.xs, c.ys, m).size()),
+            new Algo("kdtree-build-parallel", true, true, (c, m, p) -> KdTree.parallelBuild(c.xs, c.ys, m, p).size())
+    );
+
+    private static final String[] COLUMNS = {
+            "algo", "n", "distribution", "seed", "threads", "warmup", "iterations",
+            "medianNanos", "p90Nanos", "minNanos", "maxNanos",
+            "comparisons", "swaps", "allocations", "passes", "bytesMoved", "ioBytes", "maxDepth",
+            "gcCount", "gcMillis", "allocatedBytesPerOp"
+    };
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> opt = parse(args);
+        List<Algo> algos = select(opt.getOrDefault("algos", "mergesort,quicksort,radix,introselect,closest,closest-grid"));
+        int[] sizes = Arrays.stream(opt.getOrDefault("sizes", "10000,100000,1000000").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        List<Inputs.Distribution> dists = new ArrayList<>();
+        for (String d : opt.getOrDefault("dists", "RANDOM").split(",")) dists.add(Inputs.distribution(d));
+        List<Inputs.PointDistribution> pointDists = new ArrayList<>();
+        for (String d : opt.getOrDefault("point-dists", "UNIFORM").split(",")) pointDists.add(Inputs.pointDistribution(d));
+        int[] threads = Arrays.stream(opt.getOrDefault("threads", "1," + Runtime.getRuntime().availableProcessors())
+                .split(",")).mapToInt(s -> Integer.parseInt(s.trim())).distinct().toArray();
+        int warmup = Integer.parseInt(opt.getOrDefault("warmup", "3"));
+        int iters = Integer.parseInt(opt.getOrDefault("iters", "10"));
+        long seed = Long.parseLong(opt.getOrDefault("seed", "42"));
+        String out = opt.getOrDefault("out", "sweep");
+        String format = opt.getOrDefault("format", "both");
+        if (iters < 1 || warmup < 0) throw new IllegalArgumentException("iters must be >= 1, warmup >= 0");
+
+        List<String[]> rows = new ArrayList<>();
+        System.out.println(String.join(",", COLUMNS));
+        for (Algo algo : algos) {
+            for (int n : sizes) {
+                List<String> names = new ArrayList<>();
+                if (algo.points()) for (Inputs.PointDistribution d : pointDists) names.add(d.name());
+                else for (Inputs.Distribution d : dists) names.add(d.name());
+                for (String dist : names) {
+                    Case c = prepare(algo, n, dist, seed);
+                    // последовательные алгоритмы от числа потоков не зависят
+                    int[] ts = algo.parallel() ? threads : new int[]{1};
+                    for (int t : ts) {
+                        String[] row = runCell(algo, c, n, dist, seed, t, warmup, iters);
+                        rows.add(row);
+                        System.out.println(String.join(",", row));
+                    }
+                }
+            }
+        }
+
+        if (format.equals("csv") || format.equals("both")) writeCsv(Path.of(out + ".csv"), rows);
+        if (format.equals("json") || format.equals("both")) writeJson(Path.of(out + ".json"), opt, rows);
+        System.out.println("sink=" + sink);
+    }
+
+    private static Case prepare(Algo algo, int n, String dist, long seed) {
+        Case c = new Case();
+        if (algo.points()) {
+            c.pts = Inputs.points(Inputs.pointDistribution(dist), n, seed);
+            c.xs = new double[n];
+            c.ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                c.xs[i] = c.pts[i].x();
+                c.ys[i] = c.pts[i].y();
+            }
+        } else {
+            c.source = Inputs.ints(Inputs.distribution(dist), n, seed);
+            c.work = new int[n];
+        }
+        return c;
+    }
+
+    private static String[] runCell(Algo algo, Case c, int n, String dist, long seed, int threads, int warmup, int iters) {
+        ForkJoinPool pool = algo.parallel() ? new ForkJoinPool(threads) : null;
+        try {
+            for (int i = 0; i < warmup; i++) {
+                c.refill();
+                sink += algo.kernel().run(c, Metrics.NOOP, pool);
+            }
+
+            long gcCount0 = gcCount(), gcTime0 = gcMillis(), alloc0 = allocatedBytes();
+            long[] t = new long[iters];
+            for (int i = 0; i < iters; i++) {
+                c.refill();
+                long s = System.nanoTime();
+                sink += algo.kernel().run(c, Metrics.NOOP, pool);
+                t[i] = System.nanoTime() - s;
+            }
+            long gcCount = gcCount() - gcCount0, gcTime = gcMillis() - gcTime0;
+            long alloc = alloc0 < 0 ? -1 : (allocatedBytes() - alloc0) / iters;
+            Arrays.sort(t);
+
+            // счётчики - отдельным прогоном, чтобы не влиять на время
+            Metrics m = new Metrics();
+            c.refill();
+            sink += algo.kernel().run(c, m, pool);
+
+            return new String[]{
+                    algo.name(), Integer.toString(n), dist, Long.toString(seed), Integer.toString(threads),
+                    Integer.toString(warmup), Integer.toString(iters),
+                    Long.toString(percentile(t, 0.5)), Long.toString(percentile(t, 0.9)),
+                    Long.toString(t[0]), Long.toString(t[iters - 1]),
+                    Long.toString(m.comparisons), Long.toString(m.swaps), Long.toString(m.allocations),
+                    Long.toString(m.passes), Long.toString(m.bytesMoved), Long.toString(m.ioBytes),
+                    Integer.toString(m.maxRecursionDepth),
+                    Long.toString(gcCount), Long.toString(gcTime), Long.toString(alloc)
+            };
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+    }
+
+    // по ближайшему рангу
+    private static long percentile(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, idx)];
+    }
+
+    private static long gcCount() {
+        long c = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) c += Math.max(0, gc.getCollectionCount());
+        return c;
+    }
+
+    private static long gcMillis() {
+        long c = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) c += Math.max(0, gc.getCollectionTime());
+        return c;
+    }
+
+    // байты, выделенные всеми живыми потоками (включая потоки пулов); -1, если JVM не умеет
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean sun) || !sun.isThreadAllocatedMemorySupported()) return -1;
+        long total = 0;
+        for (long b : sun.getThreadAllocatedBytes(bean.getAllThreadIds())) if (b > 0) total += b;
+        return total;
+    }
+
+    private static List<Algo> select(String names) {
+        List<Algo> res = new ArrayList<>();
+        for (String name : names.split(",")) {
+            String n = name.trim();
+            Algo found = null;
+            for (Algo a : ALGOS) if (a.name().equals(n)) found = a;
+            if (found == null) throw new IllegalArgumentException("Unknown algo: " + n);
+            res.add(found);
+        }
+        return res;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opt = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("expected --key value, got: " + args[i]);
+            }
+            opt.put(args[i].substring(2), args[++i]);
+        }
+        return opt;
+    }
+
+    private static void writeCsv(Path p, List<String[]> rows) throws IOException {
+        try (Writer w = Files.newBufferedWriter(p)) {
+            w.write(String.join(",", COLUMNS));
+            w.write('\n');
+            for (String[] r : rows) {
+                w.write(String.join(",", r));
+                w.write('\n');
+            }
+        }
+    }
+
+    private static void writeJson(Path p, Map<String, String> opt, List<String[]> rows) throws IOException {
+        Runtime rt = Runtime.getRuntime();
+        Map<String, String> env = new LinkedHashMap<>();
+        env.put("timestamp", Instant.now().toString());
+        env.put("javaVersion", System.getProperty("java.version"));
+        env.put("javaVendor", System.getProperty("java.vendor"));
+        env.put("vmName", System.getProperty("java.vm.name"));
+        env.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        env.put("arch", System.getProperty("os.arch"));
+        env.put("availableProcessors", Integer.toString(rt.availableProcessors()));
+        env.put("maxHeapBytes", Long.toString(rt.maxMemory()));
+        List<String> gcs = new ArrayList<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) gcs.add(gc.getName());
+        env.put("gc", String.join(", ", gcs));
+        env.put("jvmArgs", String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()));
+
+        StringBuilder sb = new StringBuilder("{\n  \"environment\": ");
+        object(sb, env, "  ");
+        sb.append(",\n  \"options\": ");
+        object(sb, opt, "  ");
+        sb.append(",\n  \"results\": [");
+        for (int r = 0; r < rows.size(); r++) {
+            sb.append(r == 0 ? "\n    {" : ",\n    {");
+            String[] row = rows.get(r);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append('"').append(COLUMNS[i]).append("\": ");
+                // algo и distribution - строки, остальное - числа
+                if (i == 0 || i == 2) quote(sb, row[i]);
+                else sb.append(row[i]);
+            }
+            sb.append('}');
+        }
+        sb.append("\n  ]\n}\n");
+        Files.writeString(p, sb);
+    }
+
+    private static void object(StringBuilder sb, Map<String, String> map, String indent) {
+        sb.append('{');
+        int i = 0;
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            sb.append(i++ == 0 ? "\n" : ",\n").append(indent).append("  ");
+            quote(sb, e.getKey());
+            sb.append(": ");
+            quote(sb, e.getValue());
+        }
+        sb.append('\n').append(indent).append('}');
+    }
+
+    private static void quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (ch < 0x20) sb.append(String.format(Locale.ROOT, "\\u%04x", (int) ch));
+                    else sb.append(ch);
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,207 @@
+package algo.sort;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+// Ядра на jdk.incubator.vector. Лежат в vector/ и собираются отдельно с --add-modules
+// jdk.incubator.vector; Kernels находит класс через Class.forName, и только если модуль
+// подключён при запуске. Ширина - 8 int (256 бит): в JDK 17 нет
+// compress(), и сжатие по маске делается перестановкой из таблицы на 2^8 строк;
+// для 16 полос таблица была бы 4 МБ.
+final class VectorKernels {
+    private static final VectorSpecies<Integer> S = IntVector.SPECIES_256;
+    private static final int V = 8;
+
+    private static final int[] WEIGHTS = {1, 2, 4, 8, 16, 32, 64, 128};
+    private static final IntVector W = IntVector.fromArray(S, WEIGHTS, 0);
+    private static final IntVector ZERO = IntVector.zero(S);
+    // строка m: сначала полосы с битом 1 в m (идут влево), затем остальные, порядок сохраняется
+    private static final int[] PERM = new int[256 * V];
+
+    // партнёры i ^ j и разворот
+    private static final VectorShuffle<Integer> X1 = xor(1), X2 = xor(2), X4 = xor(4);
+    private static final VectorShuffle<Integer> REV = VectorShuffle.fromOp(S, i -> V - 1 - i);
+    // полоса берёт максимум пары: шаги битонной сортировки 8 (блок k, расстояние j)
+    private static final VectorMask<Integer> K2J1 = takeMax(2, 1), K4J2 = takeMax(4, 2), K4J1 = takeMax(4, 1);
+    private static final VectorMask<Integer> J4 = takeMax(8, 4), J2 = takeMax(8, 2), J1 = takeMax(8, 1);
+
+    private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[4 * V]);
+
+    static {
+        for (int m = 0; m < 256; m++) {
+            int p = m * V;
+            for (int i = 0; i < V; i++) if ((m >>> i & 1) != 0) PERM[p++] = i;
+            for (int i = 0; i < V; i++) if ((m >>> i & 1) == 0) PERM[p++] = i;
+        }
+    }
+
+    private VectorKernels() {}
+
+    // 256-битные векторы исполняются JIT-ом, а не эмулируются
+    static boolean supported() {
+        return IntVector.SPECIES_PREFERRED.vectorBitSize() >= S.vectorBitSize();
+    }
+
+    private static VectorShuffle<Integer> xor(int j) {
+        return VectorShuffle.fromOp(S, i -> i ^ j);
+    }
+
+    private static VectorMask<Integer> takeMax(int k, int j) {
+        boolean[] bits = new boolean[V];
+        for (int i = 0; i < V; i++) bits[i] = ((i & j) != 0) != ((i & k) != 0);
+        return VectorMask.fromArray(S, bits, 0);
+    }
+
+    // Разбиение [lo, hi) на x < pivot (или x <= pivot) слева и остальное справа, hi - lo >= 2V.
+    // Первый и последний вектор откладываются, поэтому у каждого края всегда есть V свободных
+    // ячеек: вектор читается с края, где свободного места меньше, переставляется по таблице
+    // («левые» полосы вперёд) и пишется целиком дважды - в левую границу и в правую,
+    // лишние полосы попадают в свободную зону и затираются позже.
+    static int split(int[] a, int lo, int hi, int pivot, boolean orEqual) {
+        IntVector first = IntVector.fromArray(S, a, lo);
+        IntVector last = IntVector.fromArray(S, a, hi - V);
+        int readL = lo + V, readR = hi - V;
+        int writeL = lo, writeR = hi;
+        while (readR - readL >= V) {
+            IntVector v;
+            if (readL - writeL <= writeR - readR) {
+                v = IntVector.fromArray(S, a, readL);
+                readL += V;
+            } else {
+                readR -= V;
+                v = IntVector.fromArray(S, a, readR);
+            }
+            int bits = leftBits(v, pivot, orEqual);
+            IntVector p = v.rearrange(IntVector.fromArray(S, PERM, bits * V).toShuffle());
+            p.intoArray(a, writeL);
+            p.intoArray(a, writeR - V);
+            int c = Integer.bitCount(bits);
+            writeL += c;
+            writeR -= V - c;
+        }
+        // хвост короче вектора и два отложенных - скалярно; свободно ровно столько, сколько их
+        int[] t = SCRATCH.get();
+        int n = readR - readL;
+        System.arraycopy(a, readL, t, 2 * V, n);
+        first.intoArray(t, 0);
+        last.intoArray(t, V);
+        for (int i = 0, end = 2 * V + n; i < end; i++) {
+            int x = t[i];
+            if (x < pivot || (orEqual && x == pivot)) a[writeL++] = x;
+            else a[--writeR] = x;
+        }
+        return writeL;
+    }
+
+    // оператор сравнения должен быть константой, иначе JIT не заменяет compare инструкцией
+    private static int leftBits(IntVector v, int pivot, boolean orEqual) {
+        VectorMask<Integer> m = orEqual ? v.compare(VectorOperators.LE, pivot) : v.compare(VectorOperators.LT, pivot);
+        return ZERO.blend(W, m).reduceLanes(VectorOperators.ADD);
+    }
+
+    // сравнить-обменять с партнёром по перестановке, максимум туда, где maxLanes
+    private static IntVector step(IntVector v, VectorShuffle<Integer> partner, VectorMask<Integer> maxLanes) {
+        IntVector p = v.rearrange(partner);
+        return v.min(p).blend(v.max(p), maxLanes);
+    }
+
+    private static IntVector sort8(IntVector v) {
+        v = step(v, X1, K2J1);
+        v = step(v, X2, K4J2);
+        v = step(v, X1, K4J1);
+        return merge8(v);
+    }
+
+    // битонный вектор -> по возрастанию
+    private static IntVector merge8(IntVector v) {
+        v = step(v, X4, J4);
+        v = step(v, X2, J2);
+        return step(v, X1, J1);
+    }
+
+    // Сортировка до 4V элементов битонной сетью: дополняем MAX_VALUE до 1, 2 или 4 векторов,
+    // сортируем каждый и сливаем парами (разворот второго, min/max, полуочистители).
+    static void sortSmall(int[] a, int lo, int hi) {
+        int n = hi - lo;
+        int[] t = SCRATCH.get();
+        System.arraycopy(a, lo, t, 0, n);
+        int vecs = n <= V ? 1 : n <= 2 * V ? 2 : 4;
+        java.util.Arrays.fill(t, n, vecs * V, Integer.MAX_VALUE);
+        IntVector v0 = sort8(IntVector.fromArray(S, t, 0));
+        if (vecs == 1) {
+            v0.intoArray(t, 0);
+        } else {
+            IntVector v1 = sort8(IntVector.fromArray(S, t, V)).rearrange(REV);
+            IntVector lo0 = v0.min(v1), hi0 = v0.max(v1);
+            v0 = merge8(lo0);
+            v1 = merge8(hi0);
+            if (vecs == 2) {
+                v0.intoArray(t, 0);
+                v1.intoArray(t, V);
+            } else {
+                IntVector v2 = sort8(IntVector.fromArray(S, t, 2 * V));
+                IntVector v3 = sort8(IntVector.fromArray(S, t, 3 * V)).rearrange(REV);
+                IntVector lo2 = v2.min(v3), hi2 = v2.max(v3);
+                v2 = merge8(lo2);
+                v3 = merge8(hi2);
+                // [v0 v1] и [v2 v3] отсортированы; второй разворачиваем целиком: [rev v3, rev v2]
+                IntVector r3 = v3.rearrange(REV), r2 = v2.rearrange(REV);
+                IntVector a0 = v0.min(r3), a1 = v1.min(r2);
+                IntVector b0 = v0.max(r3), b1 = v1.max(r2);
+                // каждая из пар (a0 a1), (b0 b1) - битонная последовательность из 16
+                IntVector c0 = a0.min(a1), c1 = a0.max(a1);
+                IntVector d0 = b0.min(b1), d1 = b0.max(b1);
+                merge8(c0).intoArray(t, 0);
+                merge8(c1).intoArray(t, V);
+                merge8(d0).intoArray(t, 2 * V);
+                merge8(d1).intoArray(t, 3 * V);
+            }
+        }
+        System.arraycopy(t, 0, a, lo, n);
+    }
+
+    // Слияние src[l1, r1) и src[l2, r2) в dst с позиции d, обе части не короче V; dst не
+    // пересекается с источниками. В регистре держим V наибольших из уже прочитанного, следующий
+    // блок берём из той части, чья голова меньше: тогда V наименьших из пары можно записать.
+    static void merge(int[] src, int l1, int r1, int l2, int r2, int[] dst, int d) {
+        IntVector hold = IntVector.fromArray(S, src, l1);
+        IntVector next = IntVector.fromArray(S, src, l2);
+        l1 += V;
+        l2 += V;
+        while (true) {
+            IntVector r = next.rearrange(REV);
+            IntVector low = merge8(hold.min(r));
+            hold = merge8(hold.max(r));
+            low.intoArray(dst, d);
+            d += V;
+            boolean first = l2 >= r2 || (l1 < r1 && src[l1] <= src[l2]);
+            if (first) {
+                if (r1 - l1 < V) break;
+                next = IntVector.fromArray(S, src, l1);
+                l1 += V;
+            } else {
+                if (r2 - l2 < V) break;
+                next = IntVector.fromArray(S, src, l2);
+                l2 += V;
+            }
+        }
+        // остаток: удерживаемый вектор и короткие хвосты - тройное скалярное слияние
+        int[] t = SCRATCH.get();
+        hold.intoArray(t, 0);
+        int h = 0;
+        while (h < V || l1 < r1 || l2 < r2) {
+            int best = 0, x = Integer.MAX_VALUE;
+            boolean any = false;
+            if (h < V) { x = t[h]; best = 0; any = true; }
+            if (l1 < r1 && (!any || src[l1] < x)) { x = src[l1]; best = 1; any = true; }
+            if (l2 < r2 && (!any || src[l2] < x)) { x = src[l2]; best = 2; }
+            dst[d++] = x;
+            if (best == 0) h++;
+            else if (best == 1) l1++;
+            else l2++;
+        }
+    }
+}